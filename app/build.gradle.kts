@@ -39,9 +39,14 @@ android {
         sourceCompatibility = JavaVersion.VERSION_1_8
         targetCompatibility = JavaVersion.VERSION_1_8
     }
+    // Local tests run plain Java classes; android.util.Log and friends just return defaults there
+    testOptions {
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
+    implementation(project(":core"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
@@ -58,9 +63,19 @@ dependencies {
     // Room Database (for Java)
     implementation(libs.room.runtime)
     annotationProcessor(libs.room.compiler) // <-- USE 'annotationProcessor' for Java
+    implementation(libs.room.paging)
+    implementation(libs.paging.runtime)
+
+    // Background database maintenance
+    implementation(libs.work.runtime)
 
     // Glide (for Java)
     implementation(libs.glide)
     annotationProcessor(libs.glide.compiler) // <-- USE 'annotationProcessor' for Java
+    implementation(libs.glide.recyclerview)
+
+    // Markdown rendering for bot replies
+    implementation(libs.markwon.core)
+    implementation(libs.markwon.tables)
 }
 android.buildFeatures.buildConfig = true
\ No newline at end of file
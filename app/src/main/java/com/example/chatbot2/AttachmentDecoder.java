@@ -0,0 +1,133 @@
+package com.example.chatbot2;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+
+/**
+ * Decodes picked images off the UI thread without ever materialising the full-resolution photo.
+ * The bounds are read first, then the image is decoded with a power-of-two sample size and
+ * scaled down so its longest edge never exceeds what the model or the screen can use.
+ */
+public class AttachmentDecoder {
+
+    // Gemini downscales anything larger, so extra pixels only cost memory and upload time
+    public static final int MODEL_MAX_DIMENSION = 1536;
+
+    public interface Callback {
+        void onDecoded(Bitmap bitmap);
+        void onError(Exception e);
+    }
+
+    private final ContentResolver contentResolver;
+    private final Executor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public AttachmentDecoder(ContentResolver contentResolver, Executor executor) {
+        this.contentResolver = contentResolver;
+        this.executor = executor;
+    }
+
+    // Decodes on the executor and delivers the result on the main thread
+    public void decode(Uri uri, int displayMaxDimension, Callback callback) {
+        final int maxDimension = Math.max(MODEL_MAX_DIMENSION, displayMaxDimension);
+        executor.execute(() -> {
+            try {
+                Bitmap bitmap = decodeSampled(uri, maxDimension);
+                mainHandler.post(() -> callback.onDecoded(bitmap));
+            } catch (IOException | RuntimeException e) {
+                mainHandler.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    private Bitmap decodeSampled(Uri uri, int maxDimension) throws IOException {
+        long start = Metrics.start();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = openStream(uri)) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Not a decodable image: " + uri);
+        }
+
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, maxDimension);
+        options.inJustDecodeBounds = false;
+        Bitmap decoded;
+        try (InputStream in = openStream(uri)) {
+            decoded = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (decoded == null) {
+            throw new IOException("Failed to decode image: " + uri);
+        }
+        Metrics.get().recordSince(Metrics.IMAGE_DECODE, start);
+        Log.d("AttachmentDecoder", "Decoded " + options.outWidth + "x" + options.outHeight
+                + " with inSampleSize " + options.inSampleSize);
+
+        // Sampling only halves, so finish with an exact scale plus the EXIF rotation in one pass
+        Matrix matrix = new Matrix();
+        float scale = Math.min(1f, (float) maxDimension / Math.max(decoded.getWidth(), decoded.getHeight()));
+        if (scale < 1f) {
+            matrix.postScale(scale, scale);
+        }
+        int rotation = readRotation(uri);
+        if (rotation != 0) {
+            matrix.postRotate(rotation);
+        }
+        if (matrix.isIdentity()) {
+            return decoded;
+        }
+        Bitmap transformed = Bitmap.createBitmap(decoded, 0, 0, decoded.getWidth(), decoded.getHeight(), matrix, true);
+        if (transformed != decoded) {
+            decoded.recycle();
+        }
+        return transformed;
+    }
+
+    // Largest power of two that keeps the longest edge at or above maxDimension
+    static int calculateInSampleSize(int width, int height, int maxDimension) {
+        int longestEdge = Math.max(width, height);
+        int inSampleSize = 1;
+        while (longestEdge / (inSampleSize * 2) >= maxDimension) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    private int readRotation(Uri uri) {
+        try (InputStream in = openStream(uri)) {
+            ExifInterface exif = new ExifInterface(in);
+            switch (exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL)) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private InputStream openStream(Uri uri) throws IOException {
+        InputStream in = contentResolver.openInputStream(uri);
+        if (in == null) {
+            throw new IOException("Could not open " + uri);
+        }
+        return in;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.chatbot2;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.signature.ObjectKey;
+import com.example.chatbot2.db.ImageStore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Opens ImageStore attachments for Glide, keyed by their content hash.
+ * Glide's own decoders then downsample the stream to the requested size, and the decoded result is
+ * kept in its memory and disk caches under that key.
+ */
+public class AttachmentModelLoader implements ModelLoader<AttachmentRef, InputStream> {
+
+    private final ImageStore imageStore;
+
+    AttachmentModelLoader(ImageStore imageStore) {
+        this.imageStore = imageStore;
+    }
+
+    @Override
+    public LoadData<InputStream> buildLoadData(@NonNull AttachmentRef model, int width, int height,
+                                               @NonNull Options options) {
+        File file = model.thumbnail ? imageStore.getThumbnailFile(model.hash) : imageStore.getImageFile(model.hash);
+        // Older attachments may have no thumbnail; fall back to the full image
+        if (model.thumbnail && !file.exists()) {
+            file = imageStore.getImageFile(model.hash);
+        }
+        return new LoadData<>(new ObjectKey(model.cacheKey()), new AttachmentFetcher(file));
+    }
+
+    @Override
+    public boolean handles(@NonNull AttachmentRef model) {
+        return true;
+    }
+
+    public static class Factory implements ModelLoaderFactory<AttachmentRef, InputStream> {
+        private final ImageStore imageStore;
+
+        public Factory(ImageStore imageStore) {
+            this.imageStore = imageStore;
+        }
+
+        @NonNull
+        @Override
+        public ModelLoader<AttachmentRef, InputStream> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new AttachmentModelLoader(imageStore);
+        }
+
+        @Override
+        public void teardown() {
+        }
+    }
+
+    // Runs on Glide's source executor
+    private static class AttachmentFetcher implements DataFetcher<InputStream> {
+        private final File file;
+        private InputStream stream;
+
+        AttachmentFetcher(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super InputStream> callback) {
+            try {
+                stream = new FileInputStream(file);
+                callback.onDataReady(stream);
+            } catch (IOException e) {
+                callback.onLoadFailed(e);
+            }
+        }
+
+        @Override
+        public void cleanup() {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {
+                    // Nothing left to release
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            // Opening a local file is not worth interrupting
+        }
+
+        @NonNull
+        @Override
+        public Class<InputStream> getDataClass() {
+            return InputStream.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.LOCAL;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.chatbot2;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Glide model for an attachment in the ImageStore.
+ * Attachments are content-addressed, so the hash alone identifies the pixels and is a stable cache key
+ * for every size Glide decodes it at.
+ */
+public final class AttachmentRef {
+
+    final String hash;
+    final boolean thumbnail;
+
+    private AttachmentRef(String hash, boolean thumbnail) {
+        this.hash = hash;
+        this.thumbnail = thumbnail;
+    }
+
+    public static AttachmentRef image(@NonNull String hash) {
+        return new AttachmentRef(hash, false);
+    }
+
+    public static AttachmentRef thumbnail(@NonNull String hash) {
+        return new AttachmentRef(hash, true);
+    }
+
+    String cacheKey() {
+        return (thumbnail ? "attachment-thumb:" : "attachment:") + hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AttachmentRef)) return false;
+        AttachmentRef other = (AttachmentRef) o;
+        return thumbnail == other.thumbnail && hash.equals(other.hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * hash.hashCode() + (thumbnail ? 1 : 0);
+    }
+}
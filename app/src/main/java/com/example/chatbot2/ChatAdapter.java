@@ -1,5 +1,6 @@
 package com.example.chatbot2;
 
+import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,18 +11,48 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
-public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+// Lists are diffed off the main thread by ListAdapter's AsyncListDiffer; submit a fresh copy on every change
+public class ChatAdapter extends ListAdapter<ChatMessage, RecyclerView.ViewHolder>
+        implements ListPreloader.PreloadModelProvider<ChatMessage>, ListPreloader.PreloadSizeProvider<ChatMessage> {
 
     private static final int VIEW_TYPE_USER = 1;
     private static final int VIEW_TYPE_BOT = 2;
 
-    private List<ChatMessage> chatMessages;
+    // Payload for partial rebinds while a streamed reply is growing
+    public static final Object PAYLOAD_STREAMED_TEXT = new Object();
+
+    // Very tall images are letterboxed rather than decoded at full height
+    private static final int MAX_IMAGE_ASPECT = 3;
+
+    private final RequestManager glide;
+    private final int maxImageWidth; // Width of the image views in both row layouts
+    private final MarkdownRenderer markdownRenderer;
+
+    private static final DiffUtil.ItemCallback<ChatMessage> DIFF_CALLBACK = new DiffUtil.ItemCallback<ChatMessage>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ChatMessage oldItem, @NonNull ChatMessage newItem) {
+            return oldItem.getStableId() == newItem.getStableId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ChatMessage oldItem, @NonNull ChatMessage newItem) {
+            return oldItem.isLoading() == newItem.isLoading()
+                    && Objects.equals(oldItem.getMessage(), newItem.getMessage())
+                    && Objects.equals(oldItem.getImageHash(), newItem.getImageHash());
+        }
+    };
 
     // --- ADD THIS INTERFACE ---
     private BotMessageListener listener;
@@ -32,9 +63,14 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     // -------------------------
 
     // --- UPDATE THE CONSTRUCTOR ---
-    public ChatAdapter(List<ChatMessage> chatMessages, BotMessageListener listener) {
-        this.chatMessages = chatMessages;
+    public ChatAdapter(BotMessageListener listener, RequestManager glide, int maxImageWidth,
+                       MarkdownRenderer markdownRenderer) {
+        super(DIFF_CALLBACK);
         this.listener = listener; // Initialize the listener
+        this.glide = glide;
+        this.maxImageWidth = maxImageWidth;
+        this.markdownRenderer = markdownRenderer;
+        setHasStableIds(true);
     }
     // -------------------------
 
@@ -76,9 +112,14 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
     // --- Adapter Methods ---
 
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getStableId();
+    }
+
     @Override
     public int getItemViewType(int position) {
-        ChatMessage message = chatMessages.get(position);
+        ChatMessage message = getItem(position);
         if (message.getSender() == ChatMessage.Sender.USER) {
             return VIEW_TYPE_USER;
         } else {
@@ -102,7 +143,7 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     // --- UPDATE onBindViewHolder ---
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
-        ChatMessage message = chatMessages.get(position);
+        ChatMessage message = getItem(position);
 
         if (getItemViewType(position) == VIEW_TYPE_USER) {
             // ... (User holder logic is unchanged)
@@ -113,12 +154,7 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
             } else {
                 userHolder.messageText.setVisibility(View.GONE);
             }
-            if (message.getImage() != null) {
-                userHolder.image.setImageBitmap(message.getImage());
-                userHolder.image.setVisibility(View.VISIBLE);
-            } else {
-                userHolder.image.setVisibility(View.GONE);
-            }
+            bindImage(userHolder.image, message);
 
         } else { // VIEW_TYPE_BOT
             BotMessageViewHolder botHolder = (BotMessageViewHolder) holder;
@@ -134,7 +170,7 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
                 // Show buttons and text only if there is text
                 if (message.getMessage() != null && !message.getMessage().isEmpty()) {
-                    botHolder.messageText.setText(message.getMessage());
+                    markdownRenderer.bind(botHolder.messageText, message.getStableId(), message.getMessage());
                     botHolder.messageText.setVisibility(View.VISIBLE);
                     botHolder.botActionsLayout.setVisibility(View.VISIBLE); // Show buttons
 
@@ -151,22 +187,78 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
                     botHolder.botActionsLayout.setVisibility(View.GONE); // Hide buttons if no text
                 }
 
-                // Handle image (unchanged)
-                if (message.getImage() != null) {
-                    Glide.with(botHolder.itemView.getContext())
-                            .load(message.getImage())
-                            .into(botHolder.image);
-                    botHolder.image.setVisibility(View.VISIBLE);
-                } else {
-                    botHolder.image.setVisibility(View.GONE);
-                }
+                bindImage(botHolder.image, message);
             }
         }
     }
     // -------------------------
 
+    // Images are decoded off-thread only when their row binds, starting from the stored thumbnail
+    private void bindImage(ImageView imageView, ChatMessage message) {
+        if (message.getImageHash() == null) {
+            glide.clear(imageView);
+            imageView.setVisibility(View.GONE);
+            return;
+        }
+        imageView.setVisibility(View.VISIBLE);
+        imageRequest(message).into(imageView);
+    }
+
+    // Shared by binding and preloading, so a preloaded row is a memory-cache hit when it binds
+    private RequestBuilder<Drawable> imageRequest(ChatMessage message) {
+        int[] size = imageSize(message);
+        String imageHash = message.getImageHash();
+        return glide.load(AttachmentRef.image(imageHash))
+                .override(size[0], size[1])
+                .fitCenter()
+                .thumbnail(glide.load(AttachmentRef.thumbnail(imageHash))
+                        .override(size[0], size[1])
+                        .fitCenter());
+    }
+
+    // Decodes at the size the row shows, from the dimensions stored with the message
+    private int[] imageSize(ChatMessage message) {
+        int width = message.getImageWidth();
+        int height = message.getImageHeight();
+        if (width <= 0 || height <= 0) {
+            return new int[]{maxImageWidth, maxImageWidth};
+        }
+        int targetWidth = Math.min(maxImageWidth, width);
+        int targetHeight = Math.max(1, Math.round((float) height * targetWidth / width));
+        return new int[]{targetWidth, Math.min(targetHeight, maxImageWidth * MAX_IMAGE_ASPECT)};
+    }
+
+    // --- Preloading ---
+
+    @NonNull
+    @Override
+    public List<ChatMessage> getPreloadItems(int position) {
+        if (position < 0 || position >= getItemCount()) {
+            return Collections.emptyList();
+        }
+        ChatMessage message = getItem(position);
+        return message.getImageHash() != null ? Collections.singletonList(message) : Collections.emptyList();
+    }
+
     @Override
-    public int getItemCount() {
-        return chatMessages.size();
+    public RequestBuilder<?> getPreloadRequestBuilder(@NonNull ChatMessage message) {
+        return imageRequest(message);
+    }
+
+    @Override
+    public int[] getPreloadSize(@NonNull ChatMessage message, int adapterPosition, int perItemPosition) {
+        return imageSize(message);
+    }
+
+    // Only the text of a streaming bot row changes between chunks, so skip the full rebind.
+    // It is shown as plain text until the reply completes and the row is rendered once as Markdown.
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.contains(PAYLOAD_STREAMED_TEXT) && holder instanceof BotMessageViewHolder) {
+            BotMessageViewHolder botHolder = (BotMessageViewHolder) holder;
+            markdownRenderer.bindPlain(botHolder.messageText, getItem(position).getMessage());
+            return;
+        }
+        super.onBindViewHolder(holder, position, payloads);
     }
 }
\ No newline at end of file
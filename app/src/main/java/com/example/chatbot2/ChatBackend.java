@@ -0,0 +1,28 @@
+package com.example.chatbot2;
+
+import com.google.ai.client.generativeai.type.Content;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.List;
+
+/**
+ * Something that can answer a chat turn. Calls are stateless: the prompt carries the replayed
+ * history followed by the new user turn, so a request can be retried or sent twice safely.
+ */
+public interface ChatBackend {
+
+    // Called on a background thread; nothing arrives once the stream's handle is cancelled
+    interface StreamListener {
+        void onChunk(String text);
+        void onError(Throwable t);
+        void onComplete();
+    }
+
+    String getName();
+
+    // Completes with the whole reply text
+    ListenableFuture<String> generate(List<Content> prompt);
+
+    // The returned handle completes when the stream ends; cancelling it stops the stream
+    ListenableFuture<Void> stream(List<Content> prompt, StreamListener listener);
+}
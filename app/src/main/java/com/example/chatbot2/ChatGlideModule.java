@@ -0,0 +1,29 @@
+package com.example.chatbot2;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.Registry;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.module.AppGlideModule;
+import com.example.chatbot2.db.ImageStore;
+
+import java.io.InputStream;
+
+// Registers the attachment loader so every chat image goes through one cached, size-aware path
+@GlideModule
+public class ChatGlideModule extends AppGlideModule {
+
+    @Override
+    public void registerComponents(@NonNull Context context, @NonNull Glide glide, @NonNull Registry registry) {
+        registry.prepend(AttachmentRef.class, InputStream.class,
+                new AttachmentModelLoader.Factory(ImageStore.get(context)));
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
@@ -1,6 +1,6 @@
 package com.example.chatbot2;
 
-import android.graphics.Bitmap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ChatMessage {
 
@@ -11,22 +11,33 @@ public class ChatMessage {
     }
 
     private String message;
-    private Bitmap image; // For user/bot to send an image
+    private String imageHash; // ImageStore key; decoded only when the row binds
+    private int imageWidth;
+    private int imageHeight;
     private Sender sender;
     private boolean isLoading; // To show a loading indicator for bot response
+    private long messageId; // Row id once persisted, 0 until then
+    private long timestamp = System.currentTimeMillis();
+
+    // Adapter identity: the row id for stored messages, a negative id for ones created in this process.
+    // It never changes once shown, so persisting a live message does not look like a remove and insert.
+    private static final AtomicLong nextLocalId = new AtomicLong(-1);
+    private long stableId = nextLocalId.getAndDecrement();
 
     // Constructor for text message
     public ChatMessage(String message, Sender sender) {
         this.message = message;
         this.sender = sender;
-        this.image = null;
+        this.imageHash = null;
         this.isLoading = false;
     }
 
     // Constructor for image message
-    public ChatMessage(String message, Bitmap image, Sender sender) {
+    public ChatMessage(String message, String imageHash, int imageWidth, int imageHeight, Sender sender) {
         this.message = message;
-        this.image = image;
+        this.imageHash = imageHash;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
         this.sender = sender;
         this.isLoading = false;
     }
@@ -35,7 +46,7 @@ public class ChatMessage {
     public ChatMessage(Sender sender, boolean isLoading) {
         this.message = "Typing..."; // Placeholder text
         this.sender = sender;
-        this.image = null;
+        this.imageHash = null;
         this.isLoading = isLoading;
     }
 
@@ -50,12 +61,20 @@ public class ChatMessage {
         this.message = message;
     }
 
-    public Bitmap getImage() {
-        return image;
+    public void appendMessage(String chunk) {
+        this.message = (this.message == null) ? chunk : this.message + chunk;
+    }
+
+    public String getImageHash() {
+        return imageHash;
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
     }
 
-    public void setImage(Bitmap image) {
-        this.image = image;
+    public int getImageHeight() {
+        return imageHeight;
     }
 
     public Sender getSender() {
@@ -66,6 +85,32 @@ public class ChatMessage {
         this.sender = sender;
     }
 
+    public long getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(long messageId) {
+        this.messageId = messageId;
+    }
+
+    // For messages read back from the database, which are identified by their row id
+    public void restoreMessageId(long messageId) {
+        this.messageId = messageId;
+        this.stableId = messageId;
+    }
+
+    public long getStableId() {
+        return stableId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
     public boolean isLoading() {
         return isLoading;
     }
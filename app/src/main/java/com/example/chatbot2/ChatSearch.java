@@ -0,0 +1,242 @@
+package com.example.chatbot2;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.TextWatcher;
+import android.text.format.DateUtils;
+import android.text.style.StyleSpan;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.chatbot2.db.ChatDao;
+import com.example.chatbot2.db.MessageSearchResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Search dialog over every chat, backed by the chat_messages_fts index.
+ * Queries run on the given executor as the user types; results arrive a page at a time and more
+ * are fetched as the list nears its end. Only the newest {@link #MAX_CANDIDATES} matches are ranked,
+ * so a query for a common word stays as fast as one for a rare word.
+ */
+public class ChatSearch {
+
+    public interface Listener {
+        void onResultSelected(MessageSearchResult result);
+    }
+
+    private static final int PAGE_SIZE = 30;
+    static final int MAX_CANDIDATES = 300;
+    private static final int PREFETCH_DISTANCE = 5;
+    private static final long QUERY_DELAY_MS = 250; // Wait for a pause in typing before querying
+
+    private final Context context;
+    private final ChatDao chatDao;
+    private final Executor executor;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Only touched on the main thread
+    private final List<MessageSearchResult> results = new ArrayList<>();
+    private final ResultAdapter adapter = new ResultAdapter();
+    private String matchQuery;
+    private int generation;
+    private boolean loading;
+    private boolean hasMore;
+    private TextView emptyView;
+    private Runnable pendingQuery;
+
+    public ChatSearch(Context context, ChatDao chatDao, Executor executor, Listener listener) {
+        this.context = context;
+        this.chatDao = chatDao;
+        this.executor = executor;
+        this.listener = listener;
+    }
+
+    public void show() {
+        View content = LayoutInflater.from(context).inflate(R.layout.dialog_search, null);
+        EditText input = content.findViewById(R.id.search_input);
+        RecyclerView resultList = content.findViewById(R.id.search_results);
+        emptyView = content.findViewById(R.id.search_empty);
+
+        LinearLayoutManager layoutManager = new LinearLayoutManager(context);
+        resultList.setLayoutManager(layoutManager);
+        resultList.setAdapter(adapter);
+        resultList.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (layoutManager.findLastVisibleItemPosition() >= results.size() - 1 - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        AlertDialog dialog = new AlertDialog.Builder(context)
+                .setView(content)
+                .setNegativeButton("Close", null)
+                .create();
+        adapter.onClick = result -> {
+            dialog.dismiss();
+            listener.onResultSelected(result);
+        };
+        dialog.setOnDismissListener(d -> {
+            generation++; // Drop any page still in flight
+            mainHandler.removeCallbacksAndMessages(null);
+        });
+
+        input.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (pendingQuery != null) {
+                    mainHandler.removeCallbacks(pendingQuery);
+                }
+                final String text = s.toString();
+                pendingQuery = () -> startQuery(text);
+                mainHandler.postDelayed(pendingQuery, QUERY_DELAY_MS);
+            }
+        });
+        dialog.show();
+    }
+
+    private void startQuery(String text) {
+        generation++;
+        loading = false;
+        matchQuery = toMatchQuery(text);
+        hasMore = matchQuery != null;
+        results.clear();
+        adapter.notifyDataSetChanged();
+        emptyView.setVisibility(View.GONE);
+        loadNextPage();
+    }
+
+    private void loadNextPage() {
+        if (loading || !hasMore) return;
+        final String query = matchQuery;
+        // Keyset of the last result shown; the first page starts above every possible rank
+        MessageSearchResult last = results.isEmpty() ? null : results.get(results.size() - 1);
+        final int afterHits = last != null ? last.hits : Integer.MAX_VALUE;
+        final long afterMessageId = last != null ? last.messageId : Long.MAX_VALUE;
+        final int requestGeneration = generation;
+        loading = true;
+
+        executor.execute(() -> {
+            long start = Metrics.start();
+            List<MessageSearchResult> page = chatDao.searchMessages(query, MessageSearchResult.MATCH_START,
+                    MessageSearchResult.MATCH_END, MAX_CANDIDATES, afterHits, afterMessageId, PAGE_SIZE);
+            Metrics.get().recordSince(Metrics.DB_SEARCH, start);
+            mainHandler.post(() -> {
+                if (requestGeneration != generation) return;
+                loading = false;
+                hasMore = page.size() == PAGE_SIZE;
+                int start = results.size();
+                results.addAll(page);
+                adapter.notifyItemRangeInserted(start, page.size());
+                emptyView.setVisibility(results.isEmpty() ? View.VISIBLE : View.GONE);
+            });
+        });
+    }
+
+    // Every word must match, and the last one may be a prefix of a longer word so results follow typing
+    static String toMatchQuery(String text) {
+        StringBuilder query = new StringBuilder();
+        for (String word : text.trim().split("\\s+")) {
+            // Quoting keeps FTS operators and punctuation in the input from breaking the query
+            String cleaned = word.replace("\"", "");
+            if (cleaned.isEmpty()) continue;
+            if (query.length() > 0) query.append(' ');
+            query.append('"').append(cleaned).append('"');
+        }
+        if (query.length() == 0) {
+            return null;
+        }
+        return query.insert(query.length() - 1, '*').toString();
+    }
+
+    // Turns the snippet's match markers into bold spans
+    static CharSequence highlight(String snippet) {
+        SpannableStringBuilder text = new SpannableStringBuilder();
+        if (snippet == null) return text;
+        int position = 0;
+        while (position < snippet.length()) {
+            int start = snippet.indexOf(MessageSearchResult.MATCH_START, position);
+            if (start == -1) break;
+            int end = snippet.indexOf(MessageSearchResult.MATCH_END, start);
+            if (end == -1) break;
+            text.append(snippet, position, start);
+            int spanStart = text.length();
+            text.append(snippet, start + 1, end);
+            text.setSpan(new StyleSpan(Typeface.BOLD), spanStart, text.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            position = end + 1;
+        }
+        text.append(snippet.substring(position));
+        return text;
+    }
+
+    // --- Result rows ---
+
+    private interface OnResultClick {
+        void onClick(MessageSearchResult result);
+    }
+
+    private class ResultAdapter extends RecyclerView.Adapter<ResultAdapter.ResultViewHolder> {
+        OnResultClick onClick;
+
+        class ResultViewHolder extends RecyclerView.ViewHolder {
+            final TextView title;
+            final TextView snippet;
+
+            ResultViewHolder(@NonNull View itemView) {
+                super(itemView);
+                title = itemView.findViewById(android.R.id.text1);
+                snippet = itemView.findViewById(android.R.id.text2);
+            }
+        }
+
+        @NonNull
+        @Override
+        public ResultViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext())
+                    .inflate(android.R.layout.simple_list_item_2, parent, false);
+            return new ResultViewHolder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull ResultViewHolder holder, int position) {
+            MessageSearchResult result = results.get(position);
+            holder.title.setText(result.sessionTitle + " · "
+                    + DateUtils.getRelativeTimeSpanString(result.timestamp));
+            holder.snippet.setText(highlight(result.snippet));
+            holder.itemView.setOnClickListener(v -> {
+                if (onClick != null) onClick.onClick(result);
+            });
+        }
+
+        @Override
+        public int getItemCount() {
+            return results.size();
+        }
+    }
+}
@@ -0,0 +1,840 @@
+package com.example.chatbot2;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
+
+import com.example.chatbot2.core.SessionTitles;
+import com.example.chatbot2.core.TokenEstimator;
+import com.example.chatbot2.db.AppDatabase;
+import com.example.chatbot2.db.ChatDao;
+import com.example.chatbot2.db.ChatExporter;
+import com.example.chatbot2.db.ChatImporter;
+import com.example.chatbot2.db.ChatMessageEntity;
+import com.example.chatbot2.db.ChatSession;
+import com.example.chatbot2.db.Converters;
+import com.example.chatbot2.db.ImageStore;
+import com.example.chatbot2.db.SessionPreview;
+import com.example.chatbot2.db.TokenBackfill;
+import com.example.chatbot2.db.WriteBehindQueue;
+
+import com.google.ai.client.generativeai.GenerativeModel;
+import com.google.ai.client.generativeai.java.GenerativeModelFutures;
+import com.google.ai.client.generativeai.type.Content;
+import com.google.ai.client.generativeai.type.GenerationConfig;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Everything about the open chat that should outlive the activity: the message window, the model
+ * context, the backends, queued and in-flight requests, the pending attachment and the TTS engine.
+ * A rotation or theme change only re-creates the views, which attach as the {@link Listener} and
+ * are handed the current messages; replies that finish meanwhile land here, not in a dead activity.
+ */
+public class ChatViewModel extends AndroidViewModel {
+
+    private static final String TAG = "ChatViewModel";
+
+    public static final int NO_SCROLL = -1;
+
+    private static final String MODEL_NAME = "gemini-2.5-flash";
+    // Short text turns and long or image turns are routed to these instead
+    private static final String LIGHT_MODEL_NAME = "gemini-2.5-flash-lite";
+    private static final String HEAVY_MODEL_NAME = "gemini-2.5-pro";
+    private static final String REPLY_FAILED_TEXT = "Sorry, something went wrong. Please try again.";
+    private static final String WELCOME_TEXT = "Hi there! How can I help you today?";
+
+    // Stream replies chunk-by-chunk instead of waiting for the full response
+    private static final boolean STREAM_RESPONSES = true;
+    // Answer from FakeBackend instead of the network, e.g. to try out timeouts and retries
+    private static final boolean USE_FAKE_BACKEND = false;
+    // Consecutive failures that open the circuit, and how long it stays open
+    private static final int CIRCUIT_FAILURE_THRESHOLD = 5;
+    private static final long CIRCUIT_OPEN_MILLIS = 30_000;
+    // Estimated tokens of history replayed to the model before older turns are summarised
+    private static final int SESSION_PAGE_SIZE = 30;
+
+    // Startup steps; the chat step is the one user actions wait for
+    public static final String STEP_CHAT = "chat";
+    private static final String STEP_DATABASE = "database";
+    private static final String STEP_IMAGE_STORE = "imageStore";
+    private static final String STEP_GEMINI = "gemini";
+    private static final String STEP_TTS = "tts";
+    private static final String STEP_TOKEN_BACKFILL = "tokenBackfill";
+    private static final String STEP_MAINTENANCE = "maintenance";
+
+    // The attached activity; every call is made on the main thread
+    public interface Listener {
+        // A new snapshot of the chat; scrollTo is a position to show once it is committed, or NO_SCROLL
+        void onMessagesChanged(List<ChatMessage> messages, int scrollTo);
+        // A row's text changed in place; streamedText rows only need the text rebound
+        void onMessageChanged(ChatMessage message, boolean streamedText, boolean followIfLast);
+        void onSelectedSessionChanged(long sessionId);
+        void onNotice(String text);
+    }
+
+    private final Application application;
+    private final WorkScheduler scheduler = WorkScheduler.get();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final StartupCoordinator startup;
+    private boolean started;
+    private Listener listener;
+
+    // Chat state, main thread only
+    private final List<ChatMessage> messageList = new ArrayList<>();
+    private final SessionState sessionState = new SessionState();
+    private final MessagePager messagePager;
+    private final OutboundQueue outboundQueue;
+    private long selectedSessionId = SessionState.NO_SESSION;
+    private Bitmap selectedImageBitmap; // Kept only until it is sent with the next prompt
+    private ImageStore.StoredImage selectedImage;
+    private int imagePickCounter;
+
+    // Storage
+    private final AppDatabase db;
+    private final WriteBehindQueue writeQueue;
+    private final ResponseCache responseCache;
+    private final SharedPreferences settings;
+    private final AttachmentDecoder attachmentDecoder;
+    private final LiveData<PagingData<SessionPreview>> sessionPreviews;
+    private ImageStore imageStore;
+
+    // Gemini, set up by the startup steps
+    private ModelRouter modelRouter;
+    private ContextManager contextManager;
+    private String generationConfigKey;
+
+    private final Speaker speaker;
+
+    public ChatViewModel(@NonNull Application application) {
+        super(application);
+        this.application = application;
+
+        // Building the database is cheap; opening and migrating it happens in the database step
+        db = AppDatabase.getDatabase(application);
+        settings = application.getSharedPreferences(MainActivity.SETTINGS_NAME, Context.MODE_PRIVATE);
+        writeQueue = new WriteBehindQueue(db.chatDao(), scheduler.writeScheduler());
+        responseCache = new ResponseCache(db.responseCacheDao(),
+                scheduler.executor(WorkScheduler.Lane.DB_READ), scheduler.executor(WorkScheduler.Lane.DB_WRITE),
+                ResponseCache.DEFAULT_MEMORY_BYTES, ResponseCache.DEFAULT_DISK_BYTES, ResponseCache.DEFAULT_TTL_MILLIS);
+        attachmentDecoder = new AttachmentDecoder(application.getContentResolver(),
+                scheduler.executor(WorkScheduler.Lane.DECODE));
+        outboundQueue = new OutboundQueue(this::callGeminiApi);
+        speaker = new Speaker(application, scheduler.executor(WorkScheduler.Lane.BULK),
+                Speaker.DEFAULT_CACHE_BYTES, this::notice);
+        messagePager = new MessagePager(db.chatDao(), writeQueue, scheduler.executor(WorkScheduler.Lane.DB_READ), messageList,
+                new MessagePager.Listener() {
+                    @Override
+                    public void onWindowReset(int focusPosition) {
+                        dispatchMessages(focusPosition);
+                    }
+
+                    @Override
+                    public void onRangeInserted(int position, int count) {
+                        dispatchMessages(NO_SCROLL);
+                    }
+
+                    @Override
+                    public void onRangeRemoved(int position, int count) {
+                        dispatchMessages(NO_SCROLL);
+                    }
+                });
+
+        // The drawer's history is a paged query Room re-runs when sessions change, so nothing here reloads it
+        Pager<Integer, SessionPreview> pager = new Pager<>(new PagingConfig(SESSION_PAGE_SIZE),
+                () -> db.chatDao().getSessionPreviews());
+        sessionPreviews = PagingLiveData.cachedIn(PagingLiveData.getLiveData(pager), ViewModelKt.getViewModelScope(this));
+
+        Executor mainExecutor = ContextCompat.getMainExecutor(application);
+        startup = new StartupCoordinator(mainExecutor)
+                .step(STEP_DATABASE, scheduler.executor(WorkScheduler.Lane.DB_READ),
+                        () -> db.getOpenHelper().getWritableDatabase())
+                .step(STEP_IMAGE_STORE, scheduler.executor(WorkScheduler.Lane.DECODE),
+                        () -> imageStore = ImageStore.get(application))
+                .step(STEP_GEMINI, scheduler.executor(WorkScheduler.Lane.NETWORK), this::setupGemini)
+                .step(STEP_CHAT, mainExecutor, this::setupChatSession, STEP_GEMINI, STEP_IMAGE_STORE)
+                .deferredStep(STEP_TTS, mainExecutor, speaker::init)
+                .deferredStep(STEP_TOKEN_BACKFILL, scheduler.executor(WorkScheduler.Lane.BULK),
+                        () -> TokenBackfill.run(db.chatDao(), scheduler.executor(WorkScheduler.Lane.DB_WRITE)),
+                        STEP_DATABASE)
+                .deferredStep(STEP_MAINTENANCE, scheduler.executor(WorkScheduler.Lane.BULK),
+                        () -> MaintenanceWorker.schedule(application));
+    }
+
+    // --- Attaching ---
+
+    // Runs the startup graph on the first call; a re-created activity finds it done
+    public void start(View firstFrameView) {
+        if (started) return;
+        started = true;
+        startup.start(firstFrameView);
+    }
+
+    // Hands the new listener the current state; pass null when the views go away
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        if (listener != null) {
+            listener.onSelectedSessionChanged(selectedSessionId);
+            listener.onMessagesChanged(new ArrayList<>(messageList), NO_SCROLL);
+        }
+    }
+
+    // Runs action on the main thread once the chat is set up; immediately if it already is
+    public void runWhenReady(Runnable action) {
+        startup.runAfter(STEP_CHAT, action);
+    }
+
+    public LiveData<PagingData<SessionPreview>> getSessionPreviews() {
+        return sessionPreviews;
+    }
+
+    public ChatDao getChatDao() {
+        return db.chatDao();
+    }
+
+    // Pending chat writes are committed as soon as the app leaves the foreground
+    public void flushWrites() {
+        writeQueue.flush();
+    }
+
+    // The activity is finishing for good: stop requests for the open chat and let go of the engine
+    @Override
+    protected void onCleared() {
+        listener = null;
+        scheduler.cancelSessionWork();
+        writeQueue.flush();
+        MaintenanceWorker.setOpenSession(SessionState.NO_SESSION);
+        speaker.shutdown();
+    }
+
+    private void dispatchMessages(int scrollTo) {
+        if (listener != null) {
+            listener.onMessagesChanged(new ArrayList<>(messageList), scrollTo);
+        }
+    }
+
+    private void dispatchLatest() {
+        dispatchMessages(messageList.size() - 1);
+    }
+
+    private void dispatchMessageChanged(ChatMessage message, boolean streamedText, boolean followIfLast) {
+        if (listener != null) {
+            listener.onMessageChanged(message, streamedText, followIfLast);
+        }
+    }
+
+    private void selectSession(long sessionId) {
+        selectedSessionId = sessionId;
+        MaintenanceWorker.setOpenSession(sessionId);
+        if (listener != null) {
+            listener.onSelectedSessionChanged(sessionId);
+        }
+    }
+
+    private void notice(String text) {
+        if (listener != null) {
+            listener.onNotice(text);
+        }
+    }
+
+    // Like Activity.runOnUiThread: inline on the main thread, posted from anywhere else
+    private void runOnMainThread(Runnable action) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            action.run();
+        } else {
+            mainHandler.post(action);
+        }
+    }
+
+    // --- Startup ---
+
+    // Runs on the network lane: constructing the client is the slow part of opening the app
+    private void setupGemini() {
+        GenerationConfig.Builder configBuilder = new GenerationConfig.Builder();
+        configBuilder.temperature = 0.9f;
+        configBuilder.topK = 1;
+        configBuilder.topP = 1.0f;
+
+        // Part of the response cache key, so changing the config never serves stale replies
+        generationConfigKey = "temperature=" + configBuilder.temperature
+                + ",topK=" + configBuilder.topK + ",topP=" + configBuilder.topP;
+
+        GenerationConfig config = configBuilder.build();
+        GenerativeModelFutures geminiModel = newModel(MODEL_NAME, config);
+
+        // Fake tiers answer after a delay that grows with model size, like the real ones
+        modelRouter = new ModelRouter(
+                newBackend(LIGHT_MODEL_NAME, USE_FAKE_BACKEND ? null : newModel(LIGHT_MODEL_NAME, config), 300),
+                newBackend(MODEL_NAME, USE_FAKE_BACKEND ? null : geminiModel, 800),
+                newBackend(HEAVY_MODEL_NAME, USE_FAKE_BACKEND ? null : newModel(HEAVY_MODEL_NAME, config), 1500));
+    }
+
+    private static GenerativeModelFutures newModel(String name, GenerationConfig config) {
+        return GenerativeModelFutures.from(new GenerativeModel(name, BuildConfig.GEMINI_API_KEY, config));
+    }
+
+    // A null model means the in-process fake, answering after fakeDelayMillis
+    private ResilientBackend newBackend(String name, GenerativeModelFutures model, long fakeDelayMillis) {
+        ChatBackend backend = model != null
+                ? new GeminiBackend(name, model)
+                : new FakeBackend("fake-" + name, scheduler.timer(), fakeDelayMillis, 40);
+        return new ResilientBackend(backend, scheduler.timer(), ResilientBackend.Policy.DEFAULT,
+                new CircuitBreaker(CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_MILLIS));
+    }
+
+    // Runs once the model exists; everything that talks to Gemini hangs off this step
+    private void setupChatSession() {
+        contextManager = new ContextManager(modelRouter, writeQueue,
+                scheduler.executor(WorkScheduler.Lane.NETWORK),
+                settings.getInt(ContextManager.PREF_TOKEN_BUDGET, ContextManager.DEFAULT_TOKEN_BUDGET));
+        startNewChat();
+    }
+
+    // --- Text to Speech ---
+
+    // Sentence by sentence, replacing anything still playing; the engine is bound on first use
+    public void speak(String text) {
+        if (text.isEmpty()) return;
+        if (!speaker.isInitialized()) {
+            startup.ensureStarted(STEP_TTS);
+        }
+        speaker.speak(text);
+    }
+
+    // --- Sessions ---
+
+    public void startNewChat() {
+        // Requests and loads still running for the previous chat are no longer wanted
+        scheduler.cancelSessionWork();
+        speaker.stop();
+
+        outboundQueue.reset();
+        messagePager.reset();
+        messageList.clear();
+
+        // Reset session state
+        sessionState.switchTo(SessionState.NO_SESSION);
+        selectSession(SessionState.NO_SESSION);
+        selectedImageBitmap = null;
+        selectedImage = null;
+        imagePickCounter++; // Drop any attachment still decoding for the old chat
+
+        // Reset Gemini's history
+        contextManager.reset(-1, null, new ArrayList<>());
+
+        // Add welcome message (without saving it)
+        messageList.add(new ChatMessage(WELCOME_TEXT, ChatMessage.Sender.BOT));
+        dispatchMessages(NO_SCROLL);
+    }
+
+    public void loadChatSession(long sessionId) {
+        loadChatSession(sessionId, 0);
+    }
+
+    // Opens at the newest page, or around focusMessageId (e.g. a search result) when it is set
+    public void loadChatSession(long sessionId, long focusMessageId) {
+        scheduler.cancelSessionWork();
+        speaker.stop();
+        outboundQueue.reset();
+        final int generation = sessionState.switchTo(sessionId);
+        selectSession(sessionId);
+
+        // Reads queued after this see every write made so far
+        scheduler.executor(WorkScheduler.Lane.DB_READ).execute(writeQueue::flushAndWait);
+
+        // The newest page is shown first; older pages load as the user scrolls up
+        if (focusMessageId != 0) {
+            messagePager.openAround(sessionId, focusMessageId);
+        } else {
+            messagePager.openLatest(sessionId);
+        }
+
+        scheduler.submitForSession(WorkScheduler.Lane.DB_READ, () -> {
+            long start = Metrics.start();
+            ChatSession session = db.chatDao().getSessionById(sessionId);
+            String summary = session != null ? session.summary : null;
+
+            // Only turns newer than the rolling summary are replayed to the model
+            List<ChatMessageEntity> entities = session != null
+                    ? db.chatDao().getMessagesAfter(sessionId, session.summarizedUpToTimestamp, session.summarizedUpToMessageId)
+                    : new ArrayList<>();
+            List<ContextManager.Turn> turns = new ArrayList<>();
+            for (ChatMessageEntity entity : entities) {
+                ChatMessage.Sender sender = Converters.toSender(entity.sender);
+                ChatMessage source = new ChatMessage(entity.message, sender);
+                source.setMessageId(entity.messageId);
+                source.setTimestamp(entity.timestamp); // Part of the summary boundary if this turn is folded
+                int textTokens = entity.textTokens != ChatMessageEntity.NOT_COUNTED
+                        ? entity.textTokens : TokenEstimator.estimate(entity.message);
+                turns.add(new ContextManager.Turn(sender, entity.message, textTokens, entity.imageHash, null, source));
+            }
+
+            Metrics.get().recordSince(Metrics.DB_SESSION_RESTORE, start);
+
+            // Decode only the images the model will actually be sent again
+            int imagesDecoded = 0;
+            for (int i = turns.size() - 1; i >= 0 && imagesDecoded < ContextManager.MAX_HISTORY_IMAGES; i--) {
+                ContextManager.Turn turn = turns.get(i);
+                if (turn.imageHash != null) {
+                    turn.image = imageStore.loadImage(turn.imageHash);
+                    imagesDecoded++;
+                }
+            }
+
+            runOnMainThread(() -> {
+                if (!sessionState.isCurrent(generation)) return;
+                contextManager.reset(sessionId, summary, turns);
+            });
+        });
+    }
+
+    // Called as the chat list scrolls, with the visible range
+    public void onScrolled(int firstVisible, int lastVisible) {
+        messagePager.onScrolled(firstVisible, lastVisible);
+    }
+
+    // --- Sending ---
+
+    // Returns false if there was nothing to send
+    public boolean send(String message) {
+        if (message.isEmpty() && selectedImage == null) {
+            return false;
+        }
+        ChatMessage userMessage = addMessage(message, selectedImage, ChatMessage.Sender.USER);
+        // Sent now, or folded into the next turn if a reply is still pending
+        outboundQueue.enqueue(userMessage, selectedImageBitmap);
+        selectedImageBitmap = null;
+        selectedImage = null;
+        return true;
+    }
+
+    private ChatMessage addMessage(String message, ImageStore.StoredImage image, ChatMessage.Sender sender) {
+        ChatMessage chatMessage;
+        if (image != null) {
+            chatMessage = new ChatMessage(message, image.hash, image.width, image.height, sender);
+        } else {
+            chatMessage = new ChatMessage(message, sender);
+        }
+        if (messagePager.hasNewer()) {
+            // Older pages are on screen; bring back the newest page underneath this message
+            messagePager.jumpToLatest(chatMessage);
+        } else {
+            messageList.add(chatMessage);
+            dispatchLatest();
+        }
+
+        persistMessage(chatMessage);
+        return chatMessage;
+    }
+
+    // Queued for the write-behind writer; a new session gets a placeholder id until its row exists
+    private void persistMessage(ChatMessage chatMessage) {
+        final String message = chatMessage.getMessage();
+        final ChatMessage.Sender sender = chatMessage.getSender();
+        if (sessionState.getSessionId() == SessionState.NO_SESSION && sender == ChatMessage.Sender.USER) {
+            String title = SessionTitles.fromFirstMessage(message);
+            ChatSession newSession = new ChatSession(title, System.currentTimeMillis());
+            final long[] placeholderId = new long[1];
+            placeholderId[0] = writeQueue.enqueueNewSession(newSession, new WriteBehindQueue.SessionCallback() {
+                @Override
+                public void onSessionInserted(long sessionId) {
+                    runOnMainThread(() -> {
+                        if (sessionState.replace(placeholderId[0], sessionId)) {
+                            contextManager.setSessionId(sessionId);
+                            selectSession(sessionId);
+                        }
+                        writeQueue.releasePlaceholder(placeholderId[0]);
+                    });
+                }
+
+                @Override
+                public void onSessionFailed(Exception error) {
+                    runOnMainThread(() -> {
+                        // The chat stays on screen but unsaved; the next message starts a new session
+                        if (sessionState.replace(placeholderId[0], SessionState.NO_SESSION)) {
+                            contextManager.setSessionId(SessionState.NO_SESSION);
+                            selectSession(SessionState.NO_SESSION);
+                            notice("This chat could not be saved");
+                        }
+                        writeQueue.releasePlaceholder(placeholderId[0]);
+                    });
+                }
+            });
+            sessionState.assign(placeholderId[0]);
+            contextManager.setSessionId(placeholderId[0]);
+        }
+
+        String senderString = Converters.fromSender(sender);
+        ChatMessageEntity entity = new ChatMessageEntity(
+                sessionState.getSessionId(),
+                message,
+                chatMessage.getImageHash(),
+                chatMessage.getImageWidth(),
+                chatMessage.getImageHeight(),
+                senderString,
+                chatMessage.getTimestamp()
+        );
+        writeQueue.enqueueMessage(entity, messageId -> runOnMainThread(() -> {
+            chatMessage.setMessageId(messageId);
+            contextManager.onMessagePersisted(chatMessage);
+        }));
+    }
+
+    private ChatMessage addLoadingIndicator() {
+        ChatMessage loadingMessage = new ChatMessage(ChatMessage.Sender.BOT, true);
+        messageList.add(loadingMessage);
+        dispatchLatest();
+        return loadingMessage;
+    }
+
+    // --- Attachments ---
+
+    public void onImagePicked(Uri imageUri, int displayMaxDimension) {
+        final int pickId = ++imagePickCounter;
+        attachmentDecoder.decode(imageUri, displayMaxDimension, new AttachmentDecoder.Callback() {
+            @Override
+            public void onDecoded(Bitmap bitmap) {
+                if (pickId != imagePickCounter) return; // A newer pick replaced this one
+                storeSelectedImage(pickId, bitmap);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e("ImagePicker", "Error converting Uri to Bitmap", e);
+                notice("Failed to load image");
+            }
+        });
+    }
+
+    // Writes the attachment to the file store up front so messages only ever carry its hash
+    private void storeSelectedImage(int pickId, Bitmap bitmap) {
+        scheduler.executor(WorkScheduler.Lane.DECODE).execute(() -> {
+            try {
+                ImageStore.StoredImage stored = imageStore.put(bitmap);
+                runOnMainThread(() -> {
+                    if (pickId != imagePickCounter) return;
+                    selectedImageBitmap = bitmap;
+                    selectedImage = stored;
+                    notice("Image selected");
+                });
+            } catch (IOException e) {
+                Log.e("ImageStore", "Error saving attachment", e);
+                runOnMainThread(() -> notice("Failed to load image"));
+            }
+        });
+    }
+
+    // --- Export / Import ---
+
+    public void exportChats(Uri uri, boolean withAttachments) {
+        scheduler.executor(WorkScheduler.Lane.BULK).execute(() -> {
+            try (OutputStream out = application.getContentResolver().openOutputStream(uri)) {
+                if (out == null) throw new IOException("No stream for " + uri);
+                ChatExporter.Result result = ChatExporter.export(db.chatDao(), imageStore, out, withAttachments);
+                runOnMainThread(() -> notice("Exported " + result.sessions + " chats, "
+                        + result.messages + " messages"));
+            } catch (IOException | RuntimeException e) {
+                Log.e("Export", "Export to " + uri + " failed", e);
+                runOnMainThread(() -> notice("Export failed"));
+            }
+        });
+    }
+
+    // New sessions show up in the drawer on their own; the paged list follows chat_sessions
+    public void importChats(Uri uri) {
+        scheduler.executor(WorkScheduler.Lane.BULK).execute(() -> {
+            try (InputStream in = application.getContentResolver().openInputStream(uri)) {
+                if (in == null) throw new IOException("No stream for " + uri);
+                ChatImporter.Result result = ChatImporter.importFrom(db.chatDao(), imageStore, in);
+                String text = result.alreadyImported ? "These chats were already imported"
+                        : "Imported " + result.sessions + " chats, " + result.messages + " messages";
+                runOnMainThread(() -> notice(text));
+            } catch (IOException | RuntimeException e) {
+                // Whole batches are committed with their checkpoint, so importing the file again resumes
+                Log.e("Import", "Import from " + uri + " failed", e);
+                runOnMainThread(() -> notice("Import failed; import the file again to resume"));
+            }
+        });
+    }
+
+    // --- Settings and Diagnostics ---
+
+    public boolean isResponseCacheEnabled() {
+        return settings.getBoolean(ResponseCache.PREF_ENABLED, false);
+    }
+
+    public void setResponseCacheEnabled(boolean enabled) {
+        settings.edit().putBoolean(ResponseCache.PREF_ENABLED, enabled).apply();
+        if (!enabled) {
+            responseCache.clear();
+        }
+        Log.d("ResponseCache", "Cache " + (enabled ? "enabled" : "disabled") + ": " + responseCache.getStatsSummary());
+    }
+
+    public boolean isReadAloudEnabled() {
+        return settings.getBoolean(Speaker.PREF_READ_ALOUD, false);
+    }
+
+    public void setReadAloudEnabled(boolean enabled) {
+        settings.edit().putBoolean(Speaker.PREF_READ_ALOUD, enabled).apply();
+        if (enabled) {
+            startup.ensureStarted(STEP_TTS);
+        } else {
+            speaker.stop();
+        }
+    }
+
+    // Metrics plus the live state of the components that keep their own counters
+    public String buildDiagnosticsReport() {
+        StringBuilder report = new StringBuilder(Metrics.get().report());
+        if (modelRouter != null) {
+            report.append("\nModels\n").append(modelRouter.getStatsSummary().replace("; ", "\n")).append('\n');
+        }
+        report.append("\nResponse cache: ").append(responseCache.getStatsSummary()).append('\n');
+        report.append("Outbound queue: ").append(outboundQueue.getStatsSummary()).append('\n');
+        if (contextManager != null) {
+            report.append("Context: ~").append(contextManager.getEstimatedTokens()).append(" tokens\n");
+        }
+        report.append("Speech: ").append(speaker.getStatsSummary()).append('\n');
+        report.append("Last maintenance: ")
+                .append(settings.getString(MaintenanceWorker.PREF_LAST_REPORT, "never")).append('\n');
+        return report.toString();
+    }
+
+    // --- Replies ---
+
+    // Dispatched by outboundQueue, which waits for one of the reply paths below to finish the turn
+    private void callGeminiApi(OutboundQueue.Batch batch) {
+        final ChatMessage replyRow = addLoadingIndicator();
+
+        String message = batch.getText();
+        Bitmap image = batch.image;
+        ChatMessage userMessage = batch.getPrimaryMessage();
+        Content.Builder contentBuilder = new Content.Builder();
+        contentBuilder.setRole("user");
+        contentBuilder.addText(message);
+        if (image != null) {
+            contentBuilder.addImage(image);
+        }
+        Content content = contentBuilder.build();
+        // Each request carries the whole replayed history, so it can be retried or hedged safely
+        List<Content> prompt = contextManager.buildHistory();
+        prompt.add(content);
+        ContextManager.Turn userTurn = new ContextManager.Turn(ChatMessage.Sender.USER, message,
+                userMessage.getImageHash(), image, userMessage);
+
+        int turnTokens = TokenEstimator.estimate(message) + (image != null ? TokenEstimator.IMAGE_TOKENS : 0);
+        ChatBackend backend = modelRouter.route(contextManager.getEstimatedTokens() + turnTokens,
+                turnTokens, image != null, STREAM_RESPONSES);
+
+        // Only text prompts are cacheable; the key includes the exchange the prompt follows
+        if (isResponseCacheEnabled() && image == null) {
+            String cacheKey = ResponseCache.buildKey(message, contextManager.historyFingerprint(),
+                    backend.getName(), generationConfigKey);
+            final int generation = sessionState.getGeneration();
+            responseCache.lookup(cacheKey, cached -> {
+                if (!sessionState.isCurrent(generation)) return;
+                if (cached != null) {
+                    deliverCachedReply(userTurn, replyRow, cached);
+                } else {
+                    sendToGemini(backend, prompt, userTurn, replyRow, cacheKey);
+                }
+            });
+            return;
+        }
+        sendToGemini(backend, prompt, userTurn, replyRow, null);
+    }
+
+    private void deliverCachedReply(ContextManager.Turn userTurn, ChatMessage botMessage, String reply) {
+        Log.d("ResponseCache", "Served from cache: " + responseCache.getStatsSummary());
+        finishReplyRow(botMessage, reply);
+        readAloud(reply);
+        contextManager.addExchange(userTurn,
+                new ContextManager.Turn(ChatMessage.Sender.BOT, reply, null, null, botMessage));
+        outboundQueue.onTurnFinished();
+    }
+
+    // cacheKey is null when the reply must not be cached
+    private void sendToGemini(ChatBackend backend, List<Content> prompt, ContextManager.Turn userTurn,
+                              ChatMessage botMessage, String cacheKey) {
+        if (STREAM_RESPONSES) {
+            streamGeminiReply(backend, prompt, userTurn, botMessage, cacheKey);
+            return;
+        }
+
+        final int generation = sessionState.getGeneration();
+        final long start = Metrics.start();
+        ListenableFuture<String> responseFuture = backend.generate(prompt);
+        scheduler.trackForSession(responseFuture);
+
+        Futures.addCallback(responseFuture, new FutureCallback<String>() {
+            @Override
+            public void onSuccess(String responseText) {
+                Metrics.get().recordSince(Metrics.GEMINI_TOTAL, start);
+                runOnMainThread(() -> {
+                    if (!sessionState.isCurrent(generation)) return;
+                    if (cacheKey != null) {
+                        responseCache.put(cacheKey, responseText);
+                    }
+                    finishReplyRow(botMessage, responseText);
+                    readAloud(responseText);
+                    contextManager.addExchange(userTurn,
+                            new ContextManager.Turn(ChatMessage.Sender.BOT, responseText, null, null, botMessage));
+                    outboundQueue.onTurnFinished();
+                });
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                Log.e("GeminiAPI", "Error: " + t.getMessage(), t);
+                runOnMainThread(() -> {
+                    if (!sessionState.isCurrent(generation)) return;
+                    finishReplyRow(botMessage, failureText(t));
+                    outboundQueue.onTurnFinished();
+                });
+            }
+        }, scheduler.executor(WorkScheduler.Lane.NETWORK));
+    }
+
+    // Appends each chunk to the loading row in place; the reply is persisted once on completion
+    private void streamGeminiReply(ChatBackend backend, List<Content> prompt, ContextManager.Turn userTurn,
+                                   ChatMessage botMessage, String cacheKey) {
+        final StringBuilder replyText = new StringBuilder();
+        final long startTime = SystemClock.elapsedRealtime();
+        final int generation = sessionState.getGeneration();
+
+        // Cancelled with the session, which stops the stream
+        ListenableFuture<Void> streamHandle = backend.stream(prompt, new ChatBackend.StreamListener() {
+            private long firstTokenTime = -1;
+
+            @Override
+            public void onChunk(String chunk) {
+                if (firstTokenTime == -1) {
+                    firstTokenTime = SystemClock.elapsedRealtime();
+                    Metrics.get().recordMillis(Metrics.GEMINI_FIRST_TOKEN, firstTokenTime - startTime);
+                }
+                replyText.append(chunk);
+                runOnMainThread(() -> appendStreamedChunk(botMessage, chunk));
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                Log.e("GeminiAPI", "Error: " + t.getMessage(), t);
+                runOnMainThread(() -> {
+                    if (!sessionState.isCurrent(generation)) return;
+                    speaker.endStream();
+                    if (replyText.length() == 0) {
+                        finishReplyRow(botMessage, failureText(t));
+                    } else {
+                        // Keep what already arrived rather than throwing it away, in the transcript and the
+                        // context alike, so the next prompt follows on from what the user sees; never cached
+                        String partial = replyText.toString();
+                        botMessage.setMessage(partial);
+                        persistMessage(botMessage);
+                        dispatchMessageChanged(botMessage, false, false);
+                        contextManager.addExchange(userTurn,
+                                new ContextManager.Turn(ChatMessage.Sender.BOT, partial, null, null, botMessage));
+                    }
+                    outboundQueue.onTurnFinished();
+                });
+            }
+
+            @Override
+            public void onComplete() {
+                Metrics.get().recordMillis(Metrics.GEMINI_TOTAL, SystemClock.elapsedRealtime() - startTime);
+                runOnMainThread(() -> {
+                    if (!sessionState.isCurrent(generation)) return;
+                    speaker.endStream();
+                    if (replyText.length() == 0) {
+                        finishReplyRow(botMessage, REPLY_FAILED_TEXT);
+                    } else {
+                        String reply = replyText.toString();
+                        botMessage.setMessage(reply);
+                        persistMessage(botMessage);
+                        // Streamed text is shown plain; a full rebind renders the finished reply as Markdown
+                        dispatchMessageChanged(botMessage, false, false);
+                        if (cacheKey != null) {
+                            responseCache.put(cacheKey, reply);
+                        }
+                        contextManager.addExchange(userTurn,
+                                new ContextManager.Turn(ChatMessage.Sender.BOT, reply, null, null, botMessage));
+                    }
+                    outboundQueue.onTurnFinished();
+                });
+            }
+        });
+        scheduler.trackForSession(streamHandle);
+    }
+
+    // What the user sees in place of a reply that never came
+    private static String failureText(Throwable t) {
+        if (t instanceof ResilientBackend.BackendUnavailableException) {
+            return "Gemini isn't responding right now. Please try again in a moment.";
+        }
+        if (t instanceof TimeoutException) {
+            return "The reply took too long. Please try again.";
+        }
+        return REPLY_FAILED_TEXT;
+    }
+
+    // The row is mutated in place, which a diff cannot see, so the views are told directly
+    private void appendStreamedChunk(ChatMessage botMessage, String chunk) {
+        if (!messageList.contains(botMessage)) return; // The user switched chats mid-stream
+
+        boolean firstChunk = botMessage.isLoading();
+        if (firstChunk) {
+            // Swap the "Typing..." placeholder for real text with a full rebind
+            botMessage.setLoading(false);
+            botMessage.setMessage(chunk);
+            if (isReadAloudEnabled()) {
+                speaker.beginStream();
+            }
+        } else {
+            botMessage.appendMessage(chunk);
+        }
+        // Speaking starts with the first complete sentence, long before the reply ends
+        speaker.appendStream(chunk);
+        dispatchMessageChanged(botMessage, !firstChunk, true);
+    }
+
+    private void readAloud(String reply) {
+        if (isReadAloudEnabled()) {
+            speak(reply);
+        }
+    }
+
+    // Fills the reply row in place, so it stays above any messages the user sent while it was pending
+    private void finishReplyRow(ChatMessage botMessage, String text) {
+        boolean wasLoading = botMessage.isLoading();
+        botMessage.setLoading(false);
+        botMessage.setMessage(text);
+        persistMessage(botMessage);
+        dispatchMessageChanged(botMessage, false, wasLoading);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.chatbot2;
+
+import android.os.SystemClock;
+
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops calling a backend that keeps failing.
+ * After {@code failureThreshold} failures in a row the circuit opens and requests fail at once;
+ * once {@code openMillis} have passed a single probe is let through, and its outcome closes the
+ * circuit again or reopens it. Time comes from a {@link Ticker}, so tests can drive it by hand.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    // The device's monotonic clock, which keeps counting through deep sleep
+    static final Ticker ELAPSED_REALTIME = new Ticker() {
+        @Override
+        public long read() {
+            return SystemClock.elapsedRealtimeNanos();
+        }
+    };
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Ticker ticker;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private long probeStartedAt;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this(failureThreshold, openMillis, ELAPSED_REALTIME);
+    }
+
+    public CircuitBreaker(int failureThreshold, long openMillis, Ticker ticker) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.ticker = ticker;
+    }
+
+    public synchronized boolean allowRequest() {
+        long now = nowMillis();
+        switch (state) {
+            case OPEN:
+                if (now - openedAt < openMillis) return false;
+                state = State.HALF_OPEN;
+                probeStartedAt = now;
+                return true;
+            case HALF_OPEN:
+                // A probe that never reported back (e.g. it was cancelled) must not keep the circuit shut
+                if (now - probeStartedAt < openMillis) return false;
+                probeStartedAt = now;
+                return true;
+            case CLOSED:
+            default:
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = nowMillis();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ticker.read());
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.chatbot2;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.chatbot2.core.HistoryPlanner;
+import com.example.chatbot2.core.HistoryTurn;
+import com.example.chatbot2.core.TokenEstimator;
+import com.example.chatbot2.db.WriteBehindQueue;
+import com.google.ai.client.generativeai.type.Content;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps the prompt sent to Gemini within a token budget.
+ * Recent turns are kept verbatim; once they exceed the budget the oldest ones are folded into a
+ * rolling summary in the background by the router's light tier, which is persisted on the session so reopening it does not
+ * replay the whole conversation. All state is owned by the main thread.
+ */
+public class ContextManager {
+
+    private static final String TAG = "ContextManager";
+
+    // Estimated tokens of summary plus replayed turns; the setting overrides the default
+    public static final String PREF_TOKEN_BUDGET = "context_token_budget";
+    public static final int DEFAULT_TOKEN_BUDGET = 8000;
+    private static final int MIN_TURNS_KEPT = 2;
+    // Only the most recent images are replayed; older ones are referred to in text
+    static final int MAX_HISTORY_IMAGES = 2;
+
+    // One side of an exchange, as it will be replayed to the model
+    public static class Turn implements HistoryTurn {
+        final ChatMessage.Sender sender;
+        final String text;
+        final int textTokens;
+        final String imageHash;
+        Bitmap image; // Decoded only while the image is among the last MAX_HISTORY_IMAGES
+        final ChatMessage message; // Source of the row id once the message is persisted
+
+        public Turn(ChatMessage.Sender sender, String text, String imageHash, Bitmap image, ChatMessage message) {
+            this(sender, text, TokenEstimator.estimate(text), imageHash, image, message);
+        }
+
+        // For restored turns, whose token count was stored with the row
+        public Turn(ChatMessage.Sender sender, String text, int textTokens, String imageHash, Bitmap image,
+                    ChatMessage message) {
+            this.sender = sender;
+            this.text = text;
+            this.textTokens = textTokens;
+            this.imageHash = imageHash;
+            this.image = image;
+            this.message = message;
+        }
+
+        @Override
+        public boolean isFromUser() {
+            return sender == ChatMessage.Sender.USER;
+        }
+
+        @Override
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public int getTextTokens() {
+            return textTokens;
+        }
+
+        @Override
+        public String getImageHash() {
+            return imageHash;
+        }
+
+        @Override
+        public boolean isImageAttached() {
+            return image != null;
+        }
+    }
+
+    private final ModelRouter router;
+    private final WriteBehindQueue writeQueue;
+    private final Executor executor;
+    private final int tokenBudget;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private long sessionId = -1;
+    private String summary;
+    private final List<Turn> turns = new ArrayList<>();
+    private int generation;
+    private boolean compacting;
+    private ChatMessage unsavedBoundary; // Last folded turn, whose row id the summary write waits for
+
+    public ContextManager(ModelRouter router, WriteBehindQueue writeQueue, Executor executor, int tokenBudget) {
+        this.router = router;
+        this.writeQueue = writeQueue;
+        this.executor = executor;
+        this.tokenBudget = tokenBudget;
+    }
+
+    // Starts over for a new chat or a reopened session; pending summaries are discarded
+    public void reset(long sessionId, String summary, List<Turn> restoredTurns) {
+        generation++;
+        compacting = false;
+        unsavedBoundary = null;
+        this.sessionId = sessionId;
+        this.summary = summary;
+        turns.clear();
+        turns.addAll(restoredTurns);
+        releaseOldImages();
+        compactIfNeeded();
+    }
+
+    public void setSessionId(long sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    // The summary is persisted along with the id of its last folded turn, so it waits for that row
+    public void onMessagePersisted(ChatMessage message) {
+        if (message != unsavedBoundary) return;
+        unsavedBoundary = null;
+        persistSummary(message);
+    }
+
+    // Every exchange the transcript keeps, a reply cut short mid-stream included
+    public void addExchange(Turn userTurn, Turn modelTurn) {
+        turns.add(userTurn);
+        turns.add(modelTurn);
+        releaseOldImages();
+        compactIfNeeded();
+    }
+
+    // Identifies the recent exchange a prompt follows, so cached replies are not reused out of context
+    public String historyFingerprint() {
+        return HistoryPlanner.fingerprint(turns);
+    }
+
+    public int getEstimatedTokens() {
+        return HistoryPlanner.estimateTokens(summary, turns);
+    }
+
+    public List<Content> buildHistory() {
+        List<Content> history = new ArrayList<>();
+        if (summary != null && !summary.isEmpty()) {
+            history.add(new Content.Builder().setRole("user")
+                    .addText("Summary of our conversation so far:\n" + summary).build());
+            history.add(new Content.Builder().setRole("model")
+                    .addText("Understood, I'll keep that context in mind.").build());
+        }
+        for (Turn turn : turns) {
+            Content.Builder builder = new Content.Builder();
+            builder.setRole(turn.isFromUser() ? "user" : "model");
+            if (turn.image != null) {
+                builder.addImage(turn.image);
+            }
+            builder.addText(HistoryPlanner.replayText(turn));
+            history.add(builder.build());
+        }
+        return history;
+    }
+
+    // Drops decoded bitmaps of images older than the last MAX_HISTORY_IMAGES so they can be collected
+    private void releaseOldImages() {
+        int oldestKept = HistoryPlanner.oldestReplayedImage(turns, MAX_HISTORY_IMAGES);
+        for (int i = 0; i < oldestKept; i++) {
+            turns.get(i).image = null;
+        }
+    }
+
+    // --- Compaction ---
+
+    private void compactIfNeeded() {
+        if (compacting) {
+            return;
+        }
+
+        // Fold whole exchanges until the kept turns fit in half the budget, so this runs rarely
+        int foldCount = HistoryPlanner.turnsToFold(summary, turns, tokenBudget, MIN_TURNS_KEPT);
+        if (foldCount == 0) {
+            return;
+        }
+
+        final int foldedTurns = foldCount;
+        final int requestGeneration = generation;
+        final Content prompt = buildSummaryPrompt(summary, turns.subList(0, foldCount));
+        compacting = true;
+
+        // Through the same deadlines, retries and circuit breaker as every other model call
+        ChatBackend backend = router.routeBackground();
+        Futures.addCallback(backend.generate(Collections.singletonList(prompt)), new FutureCallback<String>() {
+            @Override
+            public void onSuccess(String newSummary) {
+                mainHandler.post(() -> applySummary(requestGeneration, foldedTurns, newSummary));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                Log.e(TAG, "Summarising history failed", t);
+                mainHandler.post(() -> {
+                    if (requestGeneration == generation) compacting = false;
+                });
+            }
+        }, executor);
+    }
+
+    private void applySummary(int requestGeneration, int foldedTurns, String newSummary) {
+        if (requestGeneration != generation) return;
+        compacting = false;
+        if (newSummary == null || newSummary.trim().isEmpty()) return;
+
+        ChatMessage boundary = turns.get(foldedTurns - 1).message;
+        summary = newSummary.trim();
+        turns.subList(0, foldedTurns).clear();
+        Log.d(TAG, "Folded " + foldedTurns + " turns into the summary, now ~" + getEstimatedTokens() + " tokens");
+
+        if (boundary == null) return;
+        if (boundary.getMessageId() == 0) {
+            unsavedBoundary = boundary; // Written by onMessagePersisted, with whatever summary is latest by then
+            return;
+        }
+        unsavedBoundary = null; // A later boundary supersedes one still waiting
+        persistSummary(boundary);
+    }
+
+    private void persistSummary(ChatMessage boundary) {
+        if (sessionId == -1) return;
+        writeQueue.enqueueSessionSummary(sessionId, summary, boundary.getTimestamp(), boundary.getMessageId());
+    }
+
+    private static Content buildSummaryPrompt(String previousSummary, List<Turn> folded) {
+        return new Content.Builder().setRole("user")
+                .addText(HistoryPlanner.summaryPrompt(previousSummary, folded)).build();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.chatbot2;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.core.content.FileProvider;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+
+/**
+ * Hidden screen showing the in-app metrics, opened by long-pressing the toolbar.
+ * The report can be shared as a text file, e.g. attached to a bug report.
+ */
+public class DiagnosticsDialog {
+
+    private static final String TAG = "Diagnostics";
+    private static final String EXPORT_DIR = "diagnostics"; // Shared through the FileProvider, see file_paths.xml
+
+    // Builds the full report on the main thread; metrics plus whatever live state is worth including
+    public interface ReportSource {
+        String buildReport();
+    }
+
+    private final Context context;
+    private final Executor ioExecutor;
+    private final ReportSource source;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public DiagnosticsDialog(Context context, Executor ioExecutor, ReportSource source) {
+        this.context = context;
+        this.ioExecutor = ioExecutor;
+        this.source = source;
+    }
+
+    public void show() {
+        View content = LayoutInflater.from(context).inflate(R.layout.dialog_diagnostics, null);
+        TextView reportView = content.findViewById(R.id.diagnostics_report);
+        reportView.setText(source.buildReport());
+
+        AlertDialog dialog = new AlertDialog.Builder(context)
+                .setTitle("Diagnostics")
+                .setView(content)
+                .setPositiveButton("Export", (d, which) -> export(source.buildReport()))
+                .setNeutralButton("Reset", null)
+                .setNegativeButton("Close", null)
+                .create();
+        dialog.show();
+        // Set after show() so pressing it refreshes the report instead of closing the dialog
+        dialog.getButton(AlertDialog.BUTTON_NEUTRAL).setOnClickListener(v -> {
+            Metrics.get().reset();
+            reportView.setText(source.buildReport());
+        });
+    }
+
+    private void export(String report) {
+        File dir = new File(context.getCacheDir(), EXPORT_DIR);
+        File file = new File(dir, "diagnostics-" + System.currentTimeMillis() + ".txt");
+        ioExecutor.execute(() -> {
+            try {
+                dir.mkdirs();
+                try (OutputStream out = new FileOutputStream(file)) {
+                    out.write(report.getBytes(StandardCharsets.UTF_8));
+                }
+                mainHandler.post(() -> share(file));
+            } catch (IOException e) {
+                Log.e(TAG, "Writing " + file + " failed", e);
+                mainHandler.post(() -> Toast.makeText(context, "Export failed", Toast.LENGTH_SHORT).show());
+            }
+        });
+    }
+
+    private void share(File file) {
+        Uri uri = FileProvider.getUriForFile(context, context.getPackageName() + ".fileprovider", file);
+        Intent send = new Intent(Intent.ACTION_SEND)
+                .setType("text/plain")
+                .putExtra(Intent.EXTRA_STREAM, uri)
+                .addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        context.startActivity(Intent.createChooser(send, "Export diagnostics"));
+    }
+}
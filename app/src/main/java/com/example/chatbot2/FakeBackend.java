@@ -0,0 +1,145 @@
+package com.example.chatbot2;
+
+import com.google.ai.client.generativeai.type.Content;
+import com.google.ai.client.generativeai.type.Part;
+import com.google.ai.client.generativeai.type.TextPart;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process backend for exercising the call path without the network.
+ * Each call takes the next scripted outcome: a reply after a delay, a failure, or a stall that
+ * never answers. Once the script runs out it echoes the prompt. Streamed replies arrive a word
+ * at a time, a fixed interval apart, so timings are the same on every run.
+ */
+public class FakeBackend implements ChatBackend {
+
+    public static class Outcome {
+        final long delayMillis;
+        final String reply;
+        final Throwable error;
+
+        private Outcome(long delayMillis, String reply, Throwable error) {
+            this.delayMillis = delayMillis;
+            this.reply = reply;
+            this.error = error;
+        }
+
+        public static Outcome reply(long delayMillis, String reply) {
+            return new Outcome(delayMillis, reply, null);
+        }
+
+        public static Outcome fail(long delayMillis, Throwable error) {
+            return new Outcome(delayMillis, null, error);
+        }
+
+        public static Outcome stall() {
+            return new Outcome(-1, null, null);
+        }
+    }
+
+    private final String name;
+    private final ScheduledExecutorService timer;
+    private final long defaultDelayMillis;
+    private final long chunkIntervalMillis;
+    private final Deque<Outcome> script = new ArrayDeque<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    public FakeBackend(String name, ScheduledExecutorService timer, long defaultDelayMillis, long chunkIntervalMillis) {
+        this.name = name;
+        this.timer = timer;
+        this.defaultDelayMillis = defaultDelayMillis;
+        this.chunkIntervalMillis = chunkIntervalMillis;
+    }
+
+    // Outcomes are used in the order they were added, one per call
+    public synchronized FakeBackend then(Outcome outcome) {
+        script.addLast(outcome);
+        return this;
+    }
+
+    public int getCallCount() {
+        return calls.get();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ListenableFuture<String> generate(List<Content> prompt) {
+        Outcome outcome = next(prompt);
+        SettableFuture<String> result = SettableFuture.create();
+        if (outcome.delayMillis < 0) return result;
+
+        ScheduledFuture<?> pending = timer.schedule(() -> {
+            if (outcome.error != null) {
+                result.setException(outcome.error);
+            } else {
+                result.set(outcome.reply);
+            }
+        }, outcome.delayMillis, TimeUnit.MILLISECONDS);
+        cancelWith(result, pending);
+        return result;
+    }
+
+    @Override
+    public ListenableFuture<Void> stream(List<Content> prompt, StreamListener listener) {
+        Outcome outcome = next(prompt);
+        SettableFuture<Void> handle = SettableFuture.create();
+        if (outcome.delayMillis < 0) return handle;
+
+        if (outcome.error != null) {
+            cancelWith(handle, timer.schedule(() -> {
+                if (handle.set(null)) listener.onError(outcome.error);
+            }, outcome.delayMillis, TimeUnit.MILLISECONDS));
+            return handle;
+        }
+
+        String[] words = outcome.reply.split("(?<= )");
+        for (int i = 0; i < words.length; i++) {
+            final String chunk = words[i];
+            final boolean last = i == words.length - 1;
+            cancelWith(handle, timer.schedule(() -> {
+                if (handle.isDone()) return;
+                if (!chunk.isEmpty()) listener.onChunk(chunk);
+                if (last && handle.set(null)) listener.onComplete();
+            }, outcome.delayMillis + i * chunkIntervalMillis, TimeUnit.MILLISECONDS));
+        }
+        return handle;
+    }
+
+    private synchronized Outcome next(List<Content> prompt) {
+        calls.incrementAndGet();
+        Outcome scripted = script.pollFirst();
+        if (scripted != null) return scripted;
+        return Outcome.reply(defaultDelayMillis, "You said: " + lastUserText(prompt));
+    }
+
+    private static String lastUserText(List<Content> prompt) {
+        if (prompt.isEmpty()) return "";
+        StringBuilder text = new StringBuilder();
+        for (Part part : prompt.get(prompt.size() - 1).getParts()) {
+            if (part instanceof TextPart) {
+                text.append(((TextPart) part).getText());
+            }
+        }
+        return text.toString();
+    }
+
+    private static void cancelWith(ListenableFuture<?> owner, ScheduledFuture<?> pending) {
+        owner.addListener(() -> {
+            if (owner.isCancelled()) pending.cancel(false);
+        }, MoreExecutors.directExecutor());
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.chatbot2;
+
+import com.google.ai.client.generativeai.java.GenerativeModelFutures;
+import com.google.ai.client.generativeai.type.Content;
+import com.google.ai.client.generativeai.type.GenerateContentResponse;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.List;
+
+/**
+ * {@link ChatBackend} over the Gemini SDK.
+ */
+public class GeminiBackend implements ChatBackend {
+
+    private final String name;
+    private final GenerativeModelFutures model;
+
+    public GeminiBackend(String name, GenerativeModelFutures model) {
+        this.name = name;
+        this.model = model;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ListenableFuture<String> generate(List<Content> prompt) {
+        return Futures.transform(model.generateContent(prompt.toArray(new Content[0])),
+                GenerateContentResponse::getText, MoreExecutors.directExecutor());
+    }
+
+    @Override
+    public ListenableFuture<Void> stream(List<Content> prompt, StreamListener listener) {
+        final SettableFuture<Void> handle = SettableFuture.create();
+        final long start = Metrics.start();
+        model.generateContentStream(prompt.toArray(new Content[0])).subscribe(new Subscriber<GenerateContentResponse>() {
+            private boolean first = true;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                handle.addListener(() -> {
+                    if (handle.isCancelled()) {
+                        subscription.cancel();
+                    }
+                }, MoreExecutors.directExecutor());
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(GenerateContentResponse response) {
+                if (handle.isDone()) return;
+                if (first) {
+                    first = false;
+                    Metrics.get().recordSince(Metrics.GEMINI_FIRST_BYTE, start);
+                }
+                String chunk = response.getText();
+                if (chunk == null || chunk.isEmpty()) return;
+                listener.onChunk(chunk);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (handle.set(null)) listener.onError(t);
+            }
+
+            @Override
+            public void onComplete() {
+                if (handle.set(null)) listener.onComplete();
+            }
+        });
+        return handle;
+    }
+}
@@ -6,13 +6,10 @@ import android.content.ClipboardManager;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.provider.MediaStore;
 import android.speech.RecognizerIntent;
-import android.speech.tts.TextToSpeech; // <-- Add
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -24,41 +21,30 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.ActionBarDrawerToggle;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.drawerlayout.widget.DrawerLayout;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-// --- DB Imports ---
-import com.example.chatbot2.db.AppDatabase;
-import com.example.chatbot2.db.ChatMessageEntity;
-import com.example.chatbot2.db.ChatSession;
-import com.example.chatbot2.db.Converters;
-// --------------------
-
-import com.google.ai.client.generativeai.GenerativeModel;
-import com.google.ai.client.generativeai.java.ChatFutures;
-import com.google.ai.client.generativeai.java.GenerativeModelFutures;
-import com.google.ai.client.generativeai.type.Content;
-import com.google.ai.client.generativeai.type.GenerateContentResponse;
-import com.google.ai.client.generativeai.type.GenerationConfig;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
 import com.google.android.material.navigation.NavigationView;
-import com.google.common.util.concurrent.FutureCallback;
-import com.google.common.util.concurrent.Futures;
-import com.google.common.util.concurrent.ListenableFuture;
 
-import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 // --- UPDATE CLASS SIGNATURE ---
-public class MainActivity extends AppCompatActivity implements ChatAdapter.BotMessageListener {
+// Only views live here; the chat itself is owned by ChatViewModel and survives configuration changes
+public class MainActivity extends AppCompatActivity implements ChatAdapter.BotMessageListener, ChatViewModel.Listener {
 
     private DrawerLayout drawerLayout;
     private NavigationView navigationView;
@@ -67,34 +53,33 @@ public class MainActivity extends AppCompatActivity implements ChatAdapter.BotMe
 
     // Chat components
     private RecyclerView chatRecyclerView;
+    private RecyclerView sessionListView;
+    private SessionListAdapter sessionListAdapter;
     private EditText messageInput;
     private ImageButton sendButton;
     private ImageButton attachButton;
     private ImageButton micButton;
 
-    private List<ChatMessage> messageList;
+    private ChatViewModel viewModel;
     private ChatAdapter chatAdapter;
+    private ScrollJankTracker scrollJankTracker;
+    private WorkScheduler scheduler;
 
-    // Gemini components
-    private GenerativeModelFutures geminiModel;
-    private ChatFutures geminiChat;
-    private Executor backgroundExecutor;
+    static final String SETTINGS_NAME = "chatbot_settings"; // Also read by ChatViewModel and MaintenanceWorker
+
+    // Rows ahead of the scroll direction whose images are decoded before they appear
+    private static final int IMAGE_PRELOAD_ROWS = 6;
 
     // Activity Launchers
     private static final int PERMISSION_REQUEST_CODE = 100;
-    private Bitmap selectedImageBitmap;
     private ActivityResultLauncher<Intent> imagePickerLauncher;
     private ActivityResultLauncher<Intent> speechToTextLauncher;
+    private ActivityResultLauncher<String> exportZipLauncher;
+    private ActivityResultLauncher<String> exportNdjsonLauncher;
+    private ActivityResultLauncher<String[]> importLauncher;
 
-    // Database variables
-    private AppDatabase db;
-    private long currentSessionId = -1;
     private Menu navMenu;
-
-    // --- ADD THESE NEW VARIABLES ---
-    private TextToSpeech textToSpeech;
-    private ClipboardManager clipboardManager;
-    // -------------------------------
+    private ClipboardManager clipboardManager; // Fetched on first copy
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -107,11 +92,16 @@ public class MainActivity extends AppCompatActivity implements ChatAdapter.BotMe
         navigationView = findViewById(R.id.nav_view);
         toolbar = findViewById(R.id.toolbar);
         chatRecyclerView = findViewById(R.id.chat_recycler_view);
+        sessionListView = findViewById(R.id.session_list);
         messageInput = findViewById(R.id.message_input);
         sendButton = findViewById(R.id.send_button);
         attachButton = findViewById(R.id.attach_button);
         micButton = findViewById(R.id.mic_button);
 
+        // Same instance across rotations and theme changes; created on the first onCreate only
+        viewModel = new ViewModelProvider(this).get(ChatViewModel.class);
+        scheduler = WorkScheduler.get();
+
         // --- Setup Toolbar ---
         setSupportActionBar(toolbar);
         // ... (rest of toolbar setup) ...
@@ -132,85 +122,140 @@ public class MainActivity extends AppCompatActivity implements ChatAdapter.BotMe
         drawerLayout.addDrawerListener(toggle);
         toggle.syncState();
         navMenu = navigationView.getMenu();
+        navMenu.findItem(R.id.nav_response_cache).setChecked(viewModel.isResponseCacheEnabled());
+        navMenu.findItem(R.id.nav_read_aloud).setChecked(viewModel.isReadAloudEnabled());
+        // Chat actions wait for the chat step; in practice it is done before the drawer can be opened
         navigationView.setNavigationItemSelectedListener(item -> {
             int id = item.getItemId();
-            if (id == R.id.nav_new_chat) {
-                startNewChat();
-            } else {
-                loadChatSession(id);
+            if (id == R.id.nav_response_cache) {
+                boolean enabled = !item.isChecked();
+                viewModel.setResponseCacheEnabled(enabled);
+                item.setChecked(enabled);
+                return true;
+            }
+            if (id == R.id.nav_read_aloud) {
+                boolean enabled = !item.isChecked();
+                viewModel.setReadAloudEnabled(enabled);
+                item.setChecked(enabled);
+                return true;
             }
+            whenChatReady(() -> {
+                if (id == R.id.nav_new_chat) {
+                    viewModel.startNewChat();
+                    messageInput.setText("");
+                } else if (id == R.id.nav_search) {
+                    new ChatSearch(this, viewModel.getChatDao(), scheduler.executor(WorkScheduler.Lane.DB_READ),
+                            result -> viewModel.loadChatSession(result.sessionId, result.messageId)).show();
+                } else if (id == R.id.nav_export) {
+                    chooseExportFormat();
+                } else if (id == R.id.nav_import) {
+                    importLauncher.launch(new String[]{"application/zip", "application/x-ndjson", "application/json",
+                            "text/plain", "application/octet-stream"});
+                }
+            });
             drawerLayout.closeDrawers();
             return true;
         });
 
-        // --- Setup Chat & Gemini ---
-        setupChatRecyclerView(); // This MUST be before setupGemini
-        setupGemini();
+        // --- Setup Chat ---
+        setupChatRecyclerView();
+        setupSessionList();
+
+        // Hidden diagnostics screen
+        toolbar.setOnLongClickListener(v -> {
+            new DiagnosticsDialog(this, scheduler.executor(WorkScheduler.Lane.DB_READ),
+                    viewModel::buildDiagnosticsReport).show();
+            return true;
+        });
 
-        // --- Setup Launchers & Permissions ---
+        // --- Setup Launchers ---
         initActivityLaunchers();
-        requestPermissions();
 
-        // --- Setup Database ---
-        db = AppDatabase.getDatabase(this);
-        loadChatHistory();
-        startNewChat();
+        // Startup runs once per view model; re-created activities just attach to its state
+        viewModel.setListener(this);
+        viewModel.start(chatRecyclerView);
+        if (savedInstanceState == null) {
+            whenChatReady(this::requestPermissions);
+        }
 
         // --- Setup Input Button Listeners ---
-        sendButton.setOnClickListener(v -> {
-            String message = messageInput.getText().toString().trim();
-            if (!message.isEmpty() || selectedImageBitmap != null) {
-                addMessage(message, selectedImageBitmap, ChatMessage.Sender.USER);
-                callGeminiApi(message, selectedImageBitmap);
+        sendButton.setOnClickListener(v -> whenChatReady(() -> {
+            if (viewModel.send(messageInput.getText().toString().trim())) {
                 messageInput.setText("");
-                selectedImageBitmap = null;
             }
-        });
-        attachButton.setOnClickListener(v -> openGallery());
+        }));
+        attachButton.setOnClickListener(v -> whenChatReady(this::openGallery));
         micButton.setOnClickListener(v -> openSpeechToText());
-
-        // --- ADD THIS: Initialize TTS and Clipboard ---
-        initTextToSpeech();
-        clipboardManager = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
-        // ------------------------------------------
     }
 
-    // --- ADD THIS METHOD ---
-    private void initTextToSpeech() {
-        textToSpeech = new TextToSpeech(this, status -> {
-            if (status == TextToSpeech.SUCCESS) {
-                int result = textToSpeech.setLanguage(Locale.US);
-                if (result == TextToSpeech.LANG_MISSING_DATA || result == TextToSpeech.LANG_NOT_SUPPORTED) {
-                    Log.e("TTS", "Language not supported");
-                    Toast.makeText(this, "TTS Language not supported.", Toast.LENGTH_SHORT).show();
-                }
-            } else {
-                Log.e("TTS", "Initialization failed");
-                Toast.makeText(this, "TTS Initialization failed.", Toast.LENGTH_SHORT).show();
-            }
+    // Dropped if this activity is gone by the time the chat is ready; its successor has its own buttons
+    private void whenChatReady(Runnable action) {
+        viewModel.runWhenReady(() -> {
+            if (!isDestroyed()) action.run();
         });
     }
 
-    // --- ADD THIS METHOD: Handle TTS Shutdown ---
+    // Pending chat writes are committed as soon as the app leaves the foreground
+    @Override
+    protected void onStop() {
+        viewModel.flushWrites();
+        super.onStop();
+    }
+
     @Override
     protected void onDestroy() {
-        if (textToSpeech != null) {
-            textToSpeech.stop();
-            textToSpeech.shutdown();
-        }
+        viewModel.setListener(null);
+        scrollJankTracker.detach(getWindow(), chatRecyclerView);
         super.onDestroy();
     }
 
+    // --- ChatViewModel.Listener ---
+
+    @Override
+    public void onMessagesChanged(List<ChatMessage> messages, int scrollTo) {
+        // The adapter diffs the snapshot in the background and only rebinds rows that changed
+        chatAdapter.submitList(messages, scrollTo == ChatViewModel.NO_SCROLL ? null
+                : () -> chatRecyclerView.scrollToPosition(scrollTo));
+    }
+
+    // The row is mutated in place, which a diff cannot see, so the shown list is notified directly
+    @Override
+    public void onMessageChanged(ChatMessage message, boolean streamedText, boolean followIfLast) {
+        // Not shown yet if its diff is still pending; it binds the current text once committed
+        List<ChatMessage> shown = chatAdapter.getCurrentList();
+        int position = shown.indexOf(message);
+        if (position == -1) return;
+        if (streamedText) {
+            chatAdapter.notifyItemChanged(position, ChatAdapter.PAYLOAD_STREAMED_TEXT);
+        } else {
+            chatAdapter.notifyItemChanged(position);
+        }
+        if (followIfLast && position == shown.size() - 1) {
+            chatRecyclerView.scrollToPosition(position);
+        }
+    }
+
+    @Override
+    public void onSelectedSessionChanged(long sessionId) {
+        sessionListAdapter.setSelectedSessionId(sessionId);
+    }
+
+    @Override
+    public void onNotice(String text) {
+        Toast.makeText(this, text, Toast.LENGTH_SHORT).show();
+    }
+
     // --- ADD THESE: Implement the Listener Methods ---
     @Override
     public void onSpeakClicked(String text) {
-        if (textToSpeech != null && !text.isEmpty()) {
-            textToSpeech.speak(text, TextToSpeech.QUEUE_FLUSH, null, null);
-        }
+        viewModel.speak(text);
     }
 
     @Override
     public void onCopyClicked(String text) {
+        if (clipboardManager == null) {
+            clipboardManager = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
+        }
         if (clipboardManager != null && !text.isEmpty()) {
             ClipData clip = ClipData.newPlainText("ChatBot Message", text);
             clipboardManager.setPrimaryClip(clip);
@@ -221,135 +266,46 @@ public class MainActivity extends AppCompatActivity implements ChatAdapter.BotMe
 
     // --- UPDATE setupChatRecyclerView ---
     private void setupChatRecyclerView() {
-        messageList = new ArrayList<>();
         // Pass 'this' as the listener
-        chatAdapter = new ChatAdapter(messageList, this);
-        chatRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        RequestManager glide = Glide.with(this);
+        MarkdownRenderer markdownRenderer = new MarkdownRenderer(this,
+                WorkScheduler.get().executor(WorkScheduler.Lane.RENDER));
+        chatAdapter = new ChatAdapter(this, glide, getResources().getDimensionPixelSize(R.dimen.chat_image_width),
+                markdownRenderer);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        chatRecyclerView.setLayoutManager(layoutManager);
         chatRecyclerView.setAdapter(chatAdapter);
-    }
-    // ------------------------------------
-
-
-    // --- (All other methods are unchanged) ---
-
-    private void startNewChat() {
-        // Clear UI
-        messageList.clear();
-        chatAdapter.notifyDataSetChanged();
-
-        // Reset session state
-        currentSessionId = -1;
-        selectedImageBitmap = null;
-        messageInput.setText("");
-
-        // Reset Gemini's history
-        geminiChat = geminiModel.startChat();
-
-        // Add welcome message (without saving it)
-        ChatMessage welcomeMsg = new ChatMessage("Hi there! How can I help you today?", ChatMessage.Sender.BOT);
-        messageList.add(welcomeMsg);
-        chatAdapter.notifyItemInserted(messageList.size() - 1);
-    }
-
-    private void loadChatHistory() {
-        backgroundExecutor.execute(() -> {
-            List<ChatSession> sessions = db.chatDao().getAllSessions();
-            runOnUiThread(() -> {
-                try {
-                    navMenu.removeGroup(R.id.group_chat_history);
-
-                    for (ChatSession session : sessions) {
-                        navMenu.add(R.id.group_chat_history, (int) session.sessionId, Menu.NONE, session.title)
-                                .setCheckable(true);
-                    }
-                } catch (Exception e) {
-                    Log.e("ChatHistory", "Error updating chat history menu", e);
-                }
-            });
-        });
-    }
-
-    private void loadChatSession(long sessionId) {
-        backgroundExecutor.execute(() -> {
-            currentSessionId = sessionId;
-            List<ChatMessageEntity> entities = db.chatDao().getMessagesForSession(sessionId);
 
-            List<ChatMessage> newMessages = new ArrayList<>();
-            List<Content> geminiHistory = new ArrayList<>();
+        // Decode images for rows just off-screen so they are already in memory when scrolled in
+        chatRecyclerView.addOnScrollListener(
+                new RecyclerViewPreloader<>(glide, chatAdapter, chatAdapter, IMAGE_PRELOAD_ROWS));
 
-            for (ChatMessageEntity entity : entities) {
-                ChatMessage.Sender sender = Converters.toSender(entity.sender);
-                Bitmap image = Converters.toBitmap(entity.image);
-                newMessages.add(new ChatMessage(entity.message, image, sender));
-
-                Content.Builder contentBuilder = new Content.Builder();
-                if (sender == ChatMessage.Sender.USER) {
-                    contentBuilder.setRole("user");
-                } else {
-                    contentBuilder.setRole("model");
-                }
-                contentBuilder.addText(entity.message);
-                if (image != null) {
-                    contentBuilder.addImage(image);
+        // Fetch older (or, after trimming, newer) pages as the user nears either end
+        chatRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy != 0) {
+                    viewModel.onScrolled(layoutManager.findFirstVisibleItemPosition(),
+                            layoutManager.findLastVisibleItemPosition());
                 }
-                geminiHistory.add(contentBuilder.build());
             }
-
-            geminiChat = geminiModel.startChat(geminiHistory);
-
-            runOnUiThread(() -> {
-                messageList.clear();
-                messageList.addAll(newMessages);
-                chatAdapter.notifyDataSetChanged();
-                if (!messageList.isEmpty()) {
-                    chatRecyclerView.scrollToPosition(messageList.size() - 1);
-                }
-            });
         });
-    }
-
-    private void addMessage(String message, Bitmap image, ChatMessage.Sender sender) {
-        ChatMessage chatMessage;
-        if (image != null) {
-            chatMessage = new ChatMessage(message, image, sender);
-        } else {
-            chatMessage = new ChatMessage(message, sender);
-        }
-        messageList.add(chatMessage);
-        chatAdapter.notifyItemInserted(messageList.size() - 1);
-        chatRecyclerView.scrollToPosition(messageList.size() - 1);
-
-        backgroundExecutor.execute(() -> {
-            if (currentSessionId == -1 && sender == ChatMessage.Sender.USER) {
-                String title = (message != null && !message.isEmpty()) ? message : "Image query";
-                if (title.length() > 30) {
-                    title = title.substring(0, 30) + "...";
-                }
-
-                ChatSession newSession = new ChatSession(title, System.currentTimeMillis());
-                currentSessionId = db.chatDao().insertSession(newSession);
 
-                loadChatHistory();
-            }
-
-            byte[] imageBytes = Converters.fromBitmap(image);
-            String senderString = Converters.fromSender(sender);
-            ChatMessageEntity entity = new ChatMessageEntity(
-                    currentSessionId,
-                    message,
-                    imageBytes,
-                    senderString,
-                    System.currentTimeMillis()
-            );
-            db.chatDao().insertMessage(entity);
-        });
+        scrollJankTracker = new ScrollJankTracker(getWindowManager().getDefaultDisplay().getRefreshRate());
+        scrollJankTracker.attach(getWindow(), chatRecyclerView);
     }
+    // ------------------------------------
 
-    private void addLoadingIndicator() {
-        ChatMessage loadingMessage = new ChatMessage(ChatMessage.Sender.BOT, true);
-        messageList.add(loadingMessage);
-        chatAdapter.notifyItemInserted(messageList.size() - 1);
-        chatRecyclerView.scrollToPosition(messageList.size() - 1);
+    // The pages are cached in the view model, so a re-created drawer shows them without querying again
+    private void setupSessionList() {
+        sessionListAdapter = new SessionListAdapter(sessionId -> {
+            whenChatReady(() -> viewModel.loadChatSession(sessionId));
+            drawerLayout.closeDrawers();
+        });
+        sessionListView.setLayoutManager(new LinearLayoutManager(this));
+        sessionListView.setAdapter(sessionListAdapter);
+        viewModel.getSessionPreviews()
+                .observe(this, pagingData -> sessionListAdapter.submitData(getLifecycle(), pagingData));
     }
 
     private void initActivityLaunchers() {
@@ -357,18 +313,31 @@ public class MainActivity extends AppCompatActivity implements ChatAdapter.BotMe
                 new ActivityResultContracts.StartActivityForResult(),
                 result -> {
                     if (result.getResultCode() == AppCompatActivity.RESULT_OK && result.getData() != null) {
-                        Uri imageUri = result.getData().getData();
-                        try {
-                            selectedImageBitmap = MediaStore.Images.Media.getBitmap(this.getContentResolver(), imageUri);
-                            Toast.makeText(this, "Image selected", Toast.LENGTH_SHORT).show();
-                        } catch (IOException e) {
-                            Log.e("ImagePicker", "Error converting Uri to Bitmap", e);
-                            Toast.makeText(this, "Failed to load image", Toast.LENGTH_SHORT).show();
-                        }
+                        viewModel.onImagePicked(result.getData().getData(),
+                                getResources().getDisplayMetrics().widthPixels);
                     }
                 }
         );
 
+        exportZipLauncher = registerForActivityResult(
+                new ActivityResultContracts.CreateDocument("application/zip"),
+                uri -> {
+                    if (uri != null) viewModel.exportChats(uri, true);
+                }
+        );
+        exportNdjsonLauncher = registerForActivityResult(
+                new ActivityResultContracts.CreateDocument("application/x-ndjson"),
+                uri -> {
+                    if (uri != null) viewModel.exportChats(uri, false);
+                }
+        );
+        importLauncher = registerForActivityResult(
+                new ActivityResultContracts.OpenDocument(),
+                uri -> {
+                    if (uri != null) viewModel.importChats(uri);
+                }
+        );
+
         speechToTextLauncher = registerForActivityResult(
                 new ActivityResultContracts.StartActivityForResult(),
                 result -> {
@@ -383,6 +352,20 @@ public class MainActivity extends AppCompatActivity implements ChatAdapter.BotMe
         );
     }
 
+    private void chooseExportFormat() {
+        String date = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date());
+        new AlertDialog.Builder(this)
+                .setTitle("Export chats")
+                .setItems(new String[]{"With images (.zip)", "Text only (.ndjson)"}, (dialog, which) -> {
+                    if (which == 0) {
+                        exportZipLauncher.launch("chats-" + date + ".zip");
+                    } else {
+                        exportNdjsonLauncher.launch("chats-" + date + ".ndjson");
+                    }
+                })
+                .show();
+    }
+
     private void openGallery() {
         Intent intent = new Intent(Intent.ACTION_PICK, MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
         imagePickerLauncher.launch(intent);
@@ -439,69 +422,6 @@ public class MainActivity extends AppCompatActivity implements ChatAdapter.BotMe
         }
     }
 
-    private void setupGemini() {
-        backgroundExecutor = Executors.newSingleThreadExecutor();
-        Log.d("GeminiAPI_KeyCheck", "The API Key being used is: [" + BuildConfig.GEMINI_API_KEY + "]");
-
-        GenerationConfig.Builder configBuilder = new GenerationConfig.Builder();
-        configBuilder.temperature = 0.9f;
-        configBuilder.topK = 1;
-        configBuilder.topP = 1.0f;
-
-        GenerativeModel gm = new GenerativeModel(
-                "gemini-2.5-flash",
-                BuildConfig.GEMINI_API_KEY,
-                configBuilder.build()
-        );
-
-        geminiModel = GenerativeModelFutures.from(gm);
-    }
-
-    private void callGeminiApi(String message, Bitmap image) {
-        addLoadingIndicator();
-
-        Content.Builder contentBuilder = new Content.Builder();
-        contentBuilder.setRole("user");
-        contentBuilder.addText(message);
-        if (image != null) {
-            contentBuilder.addImage(image);
-        }
-        Content content = contentBuilder.build();
-
-        ListenableFuture<GenerateContentResponse> responseFuture = geminiChat.sendMessage(content);
-
-        Futures.addCallback(responseFuture, new FutureCallback<GenerateContentResponse>() {
-            @Override
-            public void onSuccess(GenerateContentResponse result) {
-                String responseText = result.getText();
-                runOnUiThread(() -> {
-                    removeLoadingIndicator();
-                    addMessage(responseText, null, ChatMessage.Sender.BOT);
-                });
-            }
-
-            @Override
-            public void onFailure(Throwable t) {
-                Log.e("GeminiAPI", "Error: " + t.getMessage(), t);
-                runOnUiThread(() -> {
-                    removeLoadingIndicator();
-                    addMessage("Sorry, something went wrong. Please try again.", null, ChatMessage.Sender.BOT);
-                });
-            }
-        }, backgroundExecutor);
-    }
-
-    private void removeLoadingIndicator() {
-        if (messageList.isEmpty()) return;
-        int lastPosition = messageList.size() - 1;
-        ChatMessage lastMessage = messageList.get(lastPosition);
-
-        if (lastMessage.isLoading()) {
-            messageList.remove(lastPosition);
-            chatAdapter.notifyItemRemoved(lastPosition);
-        }
-    }
-
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         if (toggle.onOptionsItemSelected(item)) {
@@ -509,4 +429,4 @@ public class MainActivity extends AppCompatActivity implements ChatAdapter.BotMe
         }
         return super.onOptionsItemSelected(item);
     }
-}
\ No newline at end of file
+}
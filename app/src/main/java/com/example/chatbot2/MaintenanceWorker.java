@@ -0,0 +1,225 @@
+package com.example.chatbot2;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.chatbot2.db.AppDatabase;
+import com.example.chatbot2.db.ChatDao;
+import com.example.chatbot2.db.ImageStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Daily upkeep of the chat database and attachment store, run while the device is idle and charging.
+ * Applies the retention policy (age, session count, then total size, oldest sessions first),
+ * deletes attachments nothing refers to any more, re-encodes old attachments as smaller WebP,
+ * and hands freed database pages back to the file system.
+ */
+public class MaintenanceWorker extends Worker {
+
+    private static final String TAG = "Maintenance";
+    private static final String WORK_NAME = "chat-maintenance";
+
+    public static final String KEY_BYTES_RECLAIMED = "bytesReclaimed";
+    public static final String PREF_LAST_REPORT = "maintenance_last_report";
+
+    private static final int DELETE_BATCH = 20; // Sessions per delete, so chat writes never wait long
+    private static final long ORPHAN_MIN_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int RECOMPRESS_MAX_SIZE = 1280;
+    private static final int RECOMPRESS_QUALITY = 75;
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    // The session open in the chat screen, which retention must leave alone while messages may still be
+    // written to it; WorkManager runs this worker in the app's process, so a field is enough
+    private static volatile long openSessionId = SessionState.NO_SESSION;
+
+    // Zero turns a limit off; each one can be overridden in the app's settings
+    public static class Policy {
+        public static final String PREF_MAX_AGE_DAYS = "retention_max_age_days";
+        public static final String PREF_MAX_SESSIONS = "retention_max_sessions";
+        public static final String PREF_MAX_MEGABYTES = "retention_max_megabytes";
+        public static final String PREF_RECOMPRESS_AFTER_DAYS = "retention_recompress_after_days";
+
+        final int maxAgeDays;
+        final int maxSessions;
+        final long maxBytes; // Database pages in use plus attachments
+        final int recompressAfterDays;
+
+        public Policy(int maxAgeDays, int maxSessions, long maxBytes, int recompressAfterDays) {
+            this.maxAgeDays = maxAgeDays;
+            this.maxSessions = maxSessions;
+            this.maxBytes = maxBytes;
+            this.recompressAfterDays = recompressAfterDays;
+        }
+
+        public static final Policy DEFAULT = new Policy(365, 1000, 500L * 1024 * 1024, 30);
+
+        static Policy fromPreferences(SharedPreferences settings) {
+            return new Policy(
+                    settings.getInt(PREF_MAX_AGE_DAYS, DEFAULT.maxAgeDays),
+                    settings.getInt(PREF_MAX_SESSIONS, DEFAULT.maxSessions),
+                    settings.getInt(PREF_MAX_MEGABYTES, (int) (DEFAULT.maxBytes / (1024 * 1024))) * 1024L * 1024L,
+                    settings.getInt(PREF_RECOMPRESS_AFTER_DAYS, DEFAULT.recompressAfterDays));
+        }
+    }
+
+    // Keeps an already scheduled job, so calling this on every launch is cheap
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(MaintenanceWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    public static void setOpenSession(long sessionId) {
+        openSessionId = sessionId;
+    }
+
+    public MaintenanceWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        SharedPreferences settings = context.getSharedPreferences(MainActivity.SETTINGS_NAME, Context.MODE_PRIVATE);
+        Policy policy = Policy.fromPreferences(settings);
+        AppDatabase db = AppDatabase.getDatabase(context);
+        ChatDao chatDao = db.chatDao();
+        ImageStore imageStore = ImageStore.get(context);
+        long startedAt = System.currentTimeMillis();
+        long bytesBefore = fileBytes(context, imageStore);
+
+        int sessionsDeleted;
+        int recompressed = 0;
+        try {
+            sessionsDeleted = applyAgeAndCount(chatDao, policy, startedAt);
+            deleteUnreferenced(chatDao, imageStore);
+
+            if (policy.recompressAfterDays > 0 && !isStopped()) {
+                long cutoff = startedAt - TimeUnit.DAYS.toMillis(policy.recompressAfterDays);
+                for (String hash : chatDao.getImageHashesUnusedSince(cutoff)) {
+                    if (isStopped()) break;
+                    try {
+                        ImageStore.StoredImage copy = imageStore.recompress(hash, RECOMPRESS_MAX_SIZE, RECOMPRESS_QUALITY);
+                        if (copy != null) {
+                            // The copy has its own hash and size; the original goes once nothing refers to it
+                            chatDao.replaceImage(hash, copy.hash, copy.width, copy.height);
+                            recompressed++;
+                        }
+                    } catch (IOException e) {
+                        Log.w(TAG, "Recompressing " + hash + " failed", e);
+                    }
+                }
+                if (recompressed > 0) {
+                    deleteUnreferenced(chatDao, imageStore);
+                }
+            }
+
+            if (policy.maxBytes > 0) {
+                SupportSQLiteDatabase sql = db.getOpenHelper().getWritableDatabase();
+                while (!isStopped() && usedBytes(sql) + imageStore.getStoredBytes() > policy.maxBytes) {
+                    int deleted = chatDao.deleteOldestSessions(DELETE_BATCH, openSessionId);
+                    if (deleted == 0) break;
+                    sessionsDeleted += deleted;
+                    deleteUnreferenced(chatDao, imageStore);
+                }
+            }
+
+            compact(db.getOpenHelper().getWritableDatabase());
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Maintenance failed", e);
+            return Result.retry();
+        }
+
+        long reclaimed = Math.max(0, bytesBefore - fileBytes(context, imageStore));
+        String report = "Deleted " + sessionsDeleted + " sessions, recompressed " + recompressed
+                + " attachments, reclaimed " + reclaimed / 1024 + " KB in "
+                + (System.currentTimeMillis() - startedAt) + " ms"
+                + (isStopped() ? " (stopped early)" : "");
+        Log.d(TAG, report);
+        settings.edit().putString(PREF_LAST_REPORT, report).apply();
+        return Result.success(new Data.Builder().putLong(KEY_BYTES_RECLAIMED, reclaimed).build());
+    }
+
+    private int applyAgeAndCount(ChatDao chatDao, Policy policy, long now) {
+        int deleted = 0;
+        if (policy.maxAgeDays > 0) {
+            long cutoff = now - TimeUnit.DAYS.toMillis(policy.maxAgeDays);
+            int batch;
+            while (!isStopped() && (batch = chatDao.deleteSessionsUpdatedBefore(cutoff, DELETE_BATCH, openSessionId)) > 0) {
+                deleted += batch;
+            }
+        }
+        if (policy.maxSessions > 0) {
+            int batch;
+            while (!isStopped() && (batch = chatDao.deleteSessionsBeyond(policy.maxSessions, DELETE_BATCH, openSessionId)) > 0) {
+                deleted += batch;
+            }
+        }
+        return deleted;
+    }
+
+    private static void deleteUnreferenced(ChatDao chatDao, ImageStore imageStore) {
+        List<String> referenced = chatDao.getReferencedImageHashes();
+        imageStore.deleteUnreferenced(new HashSet<>(referenced), ORPHAN_MIN_AGE_MILLIS);
+    }
+
+    // --- Database Files ---
+
+    // Returns free pages to the file system and folds the WAL back in, truncating it
+    private static void compact(SupportSQLiteDatabase sql) {
+        if (queryLong(sql, "PRAGMA auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+            // The mode only takes effect through one full VACUUM; incremental vacuums do from then on
+            sql.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            sql.execSQL("VACUUM");
+        } else {
+            try (Cursor cursor = sql.query("PRAGMA incremental_vacuum")) {
+                while (cursor.moveToNext()) {
+                    // Each step frees one page
+                }
+            }
+        }
+        sql.query("PRAGMA wal_checkpoint(TRUNCATE)").close();
+    }
+
+    // Pages holding data, which shrinks as soon as rows are deleted, unlike the file
+    private static long usedBytes(SupportSQLiteDatabase sql) {
+        return (queryLong(sql, "PRAGMA page_count") - queryLong(sql, "PRAGMA freelist_count"))
+                * queryLong(sql, "PRAGMA page_size");
+    }
+
+    private static long fileBytes(Context context, ImageStore imageStore) {
+        File database = context.getDatabasePath(AppDatabase.NAME);
+        return database.length() + new File(database.getPath() + "-wal").length() + imageStore.getStoredBytes();
+    }
+
+    private static long queryLong(SupportSQLiteDatabase sql, String pragma) {
+        try (Cursor cursor = sql.query(pragma)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.chatbot2;
+
+import android.content.Context;
+import android.text.method.LinkMovementMethod;
+import android.util.LruCache;
+import android.widget.TextView;
+
+import androidx.appcompat.widget.AppCompatTextView;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import io.noties.markwon.Markwon;
+import io.noties.markwon.ext.tables.TablePlugin;
+
+/**
+ * Renders bot replies from Markdown off the main thread.
+ * Parsing and text measurement run on the render lane and the result is kept per message, so
+ * rebinding a row while scrolling only sets an already laid-out text.
+ */
+public class MarkdownRenderer {
+
+    // Total characters of rendered text kept, roughly 1 MB of strings plus their spans
+    private static final int CACHE_CHARS = 512 * 1024;
+
+    private static class Rendered {
+        final String source;
+        final PrecomputedTextCompat text;
+
+        Rendered(String source, PrecomputedTextCompat text) {
+            this.source = source;
+            this.text = text;
+        }
+    }
+
+    private final Markwon markwon;
+    private final Executor executor;
+    private final LruCache<Long, Rendered> cache = new LruCache<Long, Rendered>(CACHE_CHARS) {
+        @Override
+        protected int sizeOf(Long key, Rendered value) {
+            return value.source.length() + value.text.length();
+        }
+    };
+
+    public MarkdownRenderer(Context context, Executor executor) {
+        this.executor = executor;
+        this.markwon = Markwon.builder(context)
+                .usePlugin(TablePlugin.create(context))
+                // Cached results are already measured, so set them without laying them out again
+                .textSetter((textView, markdown, bufferType, onComplete) -> {
+                    if (markdown instanceof PrecomputedTextCompat) {
+                        TextViewCompat.setPrecomputedText(textView, (PrecomputedTextCompat) markdown);
+                    } else {
+                        textView.setText(markdown, bufferType);
+                    }
+                    onComplete.run();
+                })
+                .build();
+    }
+
+    // key identifies the message (its stable id); the cached text is reused only while the source is unchanged
+    public void bind(TextView textView, long key, String source) {
+        PrecomputedTextCompat.Params params = TextViewCompat.getTextMetricsParams(textView);
+        Rendered cached = cache.get(key);
+        if (cached != null && cached.source.equals(source) && cached.text.getParams().equals(params)) {
+            markwon.setParsedMarkdown(textView, cached.text);
+            return;
+        }
+        if (!(textView instanceof AppCompatTextView)) {
+            markwon.setMarkdown(textView, source);
+            return;
+        }
+
+        // The view blocks on this only when it is measured, which RecyclerView's prefetch usually does ahead of time
+        FutureTask<PrecomputedTextCompat> render = new FutureTask<>(() -> {
+            PrecomputedTextCompat text = PrecomputedTextCompat.create(markwon.toMarkdown(source), params);
+            cache.put(key, new Rendered(source, text));
+            return text;
+        });
+        executor.execute(render);
+        if (!(textView.getMovementMethod() instanceof LinkMovementMethod)) {
+            textView.setMovementMethod(LinkMovementMethod.getInstance()); // Normally set by Markwon after setText
+        }
+        ((AppCompatTextView) textView).setTextFuture(render);
+    }
+
+    // For text shown as-is, e.g. a reply still streaming in; drops any render still pending for the view
+    public void bindPlain(TextView textView, CharSequence text) {
+        if (textView instanceof AppCompatTextView) {
+            ((AppCompatTextView) textView).setTextFuture(null);
+        }
+        textView.setText(text);
+    }
+}
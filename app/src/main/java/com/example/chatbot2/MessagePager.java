@@ -0,0 +1,243 @@
+package com.example.chatbot2;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.chatbot2.db.ChatDao;
+import com.example.chatbot2.db.ChatMessageEntity;
+import com.example.chatbot2.db.Converters;
+import com.example.chatbot2.db.WriteBehindQueue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps a bounded window of a session's messages in memory.
+ * Pages are fetched with keyset queries on (sessionId, timestamp, messageId): the window opens at
+ * the newest page and grows upwards as the user scrolls, dropping pages from the far end once
+ * more than {@link #MAX_PAGES_IN_MEMORY} are held. Every page query first waits for queued chat
+ * writes to commit, so a page never misses a recent message or picks it up a second time later.
+ */
+public class MessagePager {
+
+    public static final int PAGE_SIZE = 50;
+    public static final int MAX_PAGES_IN_MEMORY = 4;
+    private static final int PREFETCH_DISTANCE = 10;
+
+    // Told about every change to the window so the adapter can be notified precisely
+    public interface Listener {
+        void onWindowReset(int focusPosition);
+        void onRangeInserted(int position, int count);
+        void onRangeRemoved(int position, int count);
+    }
+
+    private final ChatDao chatDao;
+    private final WriteBehindQueue writeQueue;
+    private final Executor executor;
+    private final List<ChatMessage> window;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Only touched on the main thread
+    private long sessionId = -1;
+    private int generation;
+    private boolean hasOlder;
+    private boolean hasNewer;
+    private boolean loadingOlder;
+    private boolean loadingNewer;
+
+    public MessagePager(ChatDao chatDao, WriteBehindQueue writeQueue, Executor executor,
+                        List<ChatMessage> window, Listener listener) {
+        this.chatDao = chatDao;
+        this.writeQueue = writeQueue;
+        this.executor = executor;
+        this.window = window;
+        this.listener = listener;
+    }
+
+    // Forgets the current session; results still in flight are discarded
+    public void reset() {
+        generation++;
+        sessionId = -1;
+        hasOlder = false;
+        hasNewer = false;
+        loadingOlder = false;
+        loadingNewer = false;
+    }
+
+    public void openLatest(long sessionId) {
+        reset();
+        this.sessionId = sessionId;
+        final int requestGeneration = generation;
+        loadingOlder = true;
+
+        executor.execute(() -> {
+            writeQueue.flushAndWait();
+            long start = Metrics.start();
+            List<ChatMessage> page = toMessages(chatDao.getLatestMessages(sessionId, PAGE_SIZE));
+            Metrics.get().recordSince(Metrics.DB_PAGE_LOAD, start);
+            Collections.reverse(page);
+            mainHandler.post(() -> {
+                if (requestGeneration != generation) return;
+                loadingOlder = false;
+                hasOlder = page.size() == PAGE_SIZE;
+                window.clear();
+                window.addAll(page);
+                listener.onWindowReset(window.size() - 1);
+            });
+        });
+    }
+
+    // Opens the window centred on one message, e.g. a search result; both directions page from there
+    public void openAround(long sessionId, long messageId) {
+        reset();
+        this.sessionId = sessionId;
+        final int requestGeneration = generation;
+        final int half = PAGE_SIZE / 2;
+        loadingOlder = true;
+        loadingNewer = true;
+
+        executor.execute(() -> {
+            writeQueue.flushAndWait();
+            long start = Metrics.start();
+            ChatMessageEntity target = chatDao.getMessageById(messageId);
+            if (target == null || target.sessionId != sessionId) {
+                mainHandler.post(() -> {
+                    if (requestGeneration == generation) openLatest(sessionId);
+                });
+                return;
+            }
+            List<ChatMessage> before = toMessages(chatDao.getMessagesBefore(sessionId, target.timestamp, messageId, half));
+            Collections.reverse(before);
+            List<ChatMessage> after = toMessages(chatDao.getMessagesAfter(sessionId, target.timestamp, messageId, half));
+            Metrics.get().recordSince(Metrics.DB_PAGE_LOAD, start);
+            List<ChatMessage> page = new ArrayList<>(before);
+            page.addAll(toMessages(Collections.singletonList(target)));
+            page.addAll(after);
+            mainHandler.post(() -> {
+                if (requestGeneration != generation) return;
+                loadingOlder = false;
+                loadingNewer = false;
+                hasOlder = before.size() == half;
+                hasNewer = after.size() == half;
+                window.clear();
+                window.addAll(page);
+                listener.onWindowReset(before.size());
+            });
+        });
+    }
+
+    // Used when a new message arrives while older pages are shown: show it under the newest page
+    public void jumpToLatest(ChatMessage newMessage) {
+        long openSessionId = sessionId;
+        reset();
+        sessionId = openSessionId;
+        window.clear();
+        window.add(newMessage);
+        listener.onWindowReset(0);
+        hasOlder = true;
+        loadOlder();
+    }
+
+    public boolean hasNewer() {
+        return hasNewer;
+    }
+
+    // Called from the RecyclerView scroll listener with the visible adapter positions
+    public void onScrolled(int firstVisible, int lastVisible) {
+        if (firstVisible != -1 && firstVisible <= PREFETCH_DISTANCE) {
+            loadOlder();
+        }
+        if (lastVisible != -1 && lastVisible >= window.size() - 1 - PREFETCH_DISTANCE) {
+            loadNewer();
+        }
+    }
+
+    private void loadOlder() {
+        if (!hasOlder || loadingOlder || sessionId == -1 || window.isEmpty()) return;
+        final ChatMessage oldest = window.get(0);
+        final long pageSessionId = sessionId;
+        final int requestGeneration = generation;
+        loadingOlder = true;
+
+        executor.execute(() -> {
+            writeQueue.flushAndWait();
+            long start = Metrics.start();
+            List<ChatMessage> page = toMessages(chatDao.getMessagesBefore(
+                    pageSessionId, oldest.getTimestamp(), oldest.getMessageId(), PAGE_SIZE));
+            Metrics.get().recordSince(Metrics.DB_PAGE_LOAD, start);
+            Collections.reverse(page);
+            mainHandler.post(() -> {
+                if (requestGeneration != generation) return;
+                loadingOlder = false;
+                hasOlder = page.size() == PAGE_SIZE;
+                if (page.isEmpty()) return;
+
+                window.addAll(0, page);
+                listener.onRangeInserted(0, page.size());
+                trimNewest();
+            });
+        });
+    }
+
+    private void loadNewer() {
+        if (!hasNewer || loadingNewer || sessionId == -1 || window.isEmpty()) return;
+        final ChatMessage newest = window.get(window.size() - 1);
+        if (newest.getMessageId() == 0) return; // Not persisted yet, so it has no key to page from
+        final long pageSessionId = sessionId;
+        final int requestGeneration = generation;
+        loadingNewer = true;
+
+        executor.execute(() -> {
+            writeQueue.flushAndWait();
+            long start = Metrics.start();
+            List<ChatMessage> page = toMessages(chatDao.getMessagesAfter(
+                    pageSessionId, newest.getTimestamp(), newest.getMessageId(), PAGE_SIZE));
+            Metrics.get().recordSince(Metrics.DB_PAGE_LOAD, start);
+            mainHandler.post(() -> {
+                if (requestGeneration != generation) return;
+                loadingNewer = false;
+                hasNewer = page.size() == PAGE_SIZE;
+                if (page.isEmpty()) return;
+
+                int start = window.size();
+                window.addAll(page);
+                listener.onRangeInserted(start, page.size());
+                trimOldest();
+            });
+        });
+    }
+
+    private void trimNewest() {
+        int excess = window.size() - PAGE_SIZE * MAX_PAGES_IN_MEMORY;
+        if (excess <= 0) return;
+        int start = window.size() - excess;
+        window.subList(start, window.size()).clear();
+        listener.onRangeRemoved(start, excess);
+        hasNewer = true;
+    }
+
+    private void trimOldest() {
+        int excess = window.size() - PAGE_SIZE * MAX_PAGES_IN_MEMORY;
+        if (excess <= 0) return;
+        window.subList(0, excess).clear();
+        listener.onRangeRemoved(0, excess);
+        hasOlder = true;
+    }
+
+    // Runs on the executor
+    private List<ChatMessage> toMessages(List<ChatMessageEntity> entities) {
+        List<ChatMessage> messages = new ArrayList<>(entities.size());
+        for (ChatMessageEntity entity : entities) {
+            // Only the reference is loaded here; the adapter decodes images when rows bind
+            ChatMessage message = new ChatMessage(entity.message, entity.imageHash,
+                    entity.imageWidth, entity.imageHeight, Converters.toSender(entity.sender));
+            message.restoreMessageId(entity.messageId);
+            message.setTimestamp(entity.timestamp);
+            messages.add(message);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.chatbot2;
+
+import android.os.SystemClock;
+
+import com.example.chatbot2.core.Histogram;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide timings and counters, kept in memory for the diagnostics screen.
+ * Durations are recorded in microseconds into {@link Histogram}s, so recording costs a few
+ * atomic increments and never allocates once a metric exists.
+ */
+public class Metrics {
+
+    // --- Metric names ---
+    public static final String GEMINI_FIRST_BYTE = "gemini.first_byte";
+    public static final String GEMINI_FIRST_TOKEN = "gemini.first_token";
+    public static final String GEMINI_TOTAL = "gemini.total";
+    public static final String DB_PAGE_LOAD = "db.page_load";
+    public static final String DB_SESSION_RESTORE = "db.session_restore";
+    public static final String DB_SEARCH = "db.search";
+    public static final String DB_INSERT_BATCH = "db.insert_batch";
+    public static final String IMAGE_DECODE = "image.decode";
+    public static final String IMAGE_ENCODE = "image.encode";
+    public static final String FRAME_SCROLL = "frame.scroll";
+    public static final String FRAME_SCROLL_JANKY = "frame.scroll.janky";
+
+    private static volatile Metrics INSTANCE;
+
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final long startedAt = SystemClock.elapsedRealtime();
+
+    public static Metrics get() {
+        if (INSTANCE == null) {
+            synchronized (Metrics.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new Metrics();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private Metrics() {
+    }
+
+    // Start of a timed section, for passing to recordSince
+    public static long start() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    public void recordSince(String name, long startNanos) {
+        recordMicros(name, (SystemClock.elapsedRealtimeNanos() - startNanos) / 1000);
+    }
+
+    public void recordMillis(String name, long millis) {
+        recordMicros(name, millis * 1000);
+    }
+
+    public void recordMicros(String name, long micros) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(name, key -> new Histogram());
+        }
+        histogram.record(micros);
+    }
+
+    public void increment(String name) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(name, key -> new AtomicLong());
+        }
+        counter.incrementAndGet();
+    }
+
+    public void reset() {
+        histograms.clear();
+        counters.clear();
+    }
+
+    // A plain-text table, also used as the exported file
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "Uptime %d s%n%n", (SystemClock.elapsedRealtime() - startedAt) / 1000));
+        report.append(String.format(Locale.US, "%-22s %7s %9s %9s %9s %9s%n", "timing (ms)", "count", "p50", "p90", "p99", "max"));
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram h = entry.getValue();
+            report.append(String.format(Locale.US, "%-22s %7d %9.1f %9.1f %9.1f %9.1f%n", entry.getKey(), h.getCount(),
+                    h.getPercentile(50) / 1000.0, h.getPercentile(90) / 1000.0,
+                    h.getPercentile(99) / 1000.0, h.getMax() / 1000.0));
+        }
+        if (!counters.isEmpty()) {
+            report.append(String.format(Locale.US, "%n%-22s %7s%n", "counter", "value"));
+            for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(counters).entrySet()) {
+                report.append(String.format(Locale.US, "%-22s %7d%n", entry.getKey(), entry.getValue().get()));
+            }
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.chatbot2;
+
+import android.util.Log;
+
+import com.google.ai.client.generativeai.type.Content;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the model for each turn.
+ * Short text turns go to the light model and long or image turns to the heavy one; everything
+ * else uses the standard model. The pick then yields to what has been observed: a light model
+ * that answers slower than the standard one is skipped, and a tier whose circuit is open hands
+ * the turn to one that is still up. Streams are compared by time to first chunk and whole replies
+ * by total time, each with its own average; a skipped light model still gets every
+ * {@link #PROBE_EVERY}th turn it would have had, so it can show that it has recovered.
+ */
+public class ModelRouter {
+
+    private static final String TAG = "ModelRouter";
+
+    // Turns up to this size that carry no image are light enough for the small model
+    public static final int LIGHT_MAX_TURN_TOKENS = 200;
+    public static final int LIGHT_MAX_PROMPT_TOKENS = 2000;
+    // Prompts from this size on go to the large model
+    public static final int HEAVY_MIN_PROMPT_TOKENS = 6000;
+    // Weight of the newest latency sample in each tier's moving average
+    private static final double LATENCY_SMOOTHING = 0.2;
+    // Turns skipped for being slow between two that are sent anyway to measure again
+    public static final int PROBE_EVERY = 10;
+
+    public enum Tier {
+        LIGHT,
+        STANDARD,
+        HEAVY
+    }
+
+    private final Route light;
+    private final Route standard;
+    private final Route heavy;
+    private final Ticker ticker;
+
+    public ModelRouter(ResilientBackend light, ResilientBackend standard, ResilientBackend heavy) {
+        this(light, standard, heavy, CircuitBreaker.ELAPSED_REALTIME);
+    }
+
+    public ModelRouter(ResilientBackend light, ResilientBackend standard, ResilientBackend heavy, Ticker ticker) {
+        this.ticker = ticker;
+        this.light = new Route(Tier.LIGHT, light);
+        this.standard = new Route(Tier.STANDARD, standard);
+        this.heavy = new Route(Tier.HEAVY, heavy);
+    }
+
+    // promptTokens covers the replayed history plus the new turn, turnTokens just the new turn;
+    // streaming says which latency the tiers are compared by
+    public ChatBackend route(int promptTokens, int turnTokens, boolean hasImage, boolean streaming) {
+        Route chosen;
+        String reason;
+        if (hasImage || promptTokens >= HEAVY_MIN_PROMPT_TOKENS) {
+            chosen = heavy;
+            reason = hasImage ? "image attached" : promptTokens + " prompt tokens";
+        } else if (turnTokens <= LIGHT_MAX_TURN_TOKENS && promptTokens <= LIGHT_MAX_PROMPT_TOKENS) {
+            chosen = light;
+            reason = "short turn";
+        } else {
+            chosen = standard;
+            reason = "default";
+        }
+
+        if (chosen == light && light.slowerThan(standard, streaming)) {
+            if (light.skipForProbe()) {
+                chosen = standard;
+                reason = "light model slower than standard";
+            } else {
+                reason = "probing the light model";
+            }
+        }
+        if (!chosen.isAvailable()) {
+            Route fallback = standard.isAvailable() ? standard : light.isAvailable() ? light : heavy;
+            if (fallback != chosen) {
+                reason = chosen.tier + " unavailable";
+                chosen = fallback;
+            }
+        }
+        Log.d(TAG, "Turn of " + turnTokens + "/" + promptTokens + " tokens -> " + chosen.getName() + " (" + reason + ")");
+        return chosen;
+    }
+
+    // Background work such as summarizing history: the light tier, unless its circuit is open
+    public ChatBackend routeBackground() {
+        return light.isAvailable() || !standard.isAvailable() ? light : standard;
+    }
+
+    public String getStatsSummary() {
+        return light.describe() + "; " + standard.describe() + "; " + heavy.describe();
+    }
+
+    private long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ticker.read());
+    }
+
+    // A moving average of one kind of latency; zero until the first sample
+    private static class Latency {
+        private double averageMillis;
+        private long samples;
+
+        synchronized double averageMillis() {
+            return averageMillis;
+        }
+
+        synchronized void record(long millis) {
+            samples++;
+            averageMillis = averageMillis == 0 ? millis
+                    : averageMillis + LATENCY_SMOOTHING * (millis - averageMillis);
+        }
+
+        synchronized String describe() {
+            return samples + " calls, ~" + Math.round(averageMillis) + " ms";
+        }
+    }
+
+    // One tier's backend, timing streams to their first chunk and whole replies to the end
+    private class Route implements ChatBackend {
+        final Tier tier;
+        final ResilientBackend backend;
+        private final Latency firstChunk = new Latency();
+        private final Latency wholeReply = new Latency();
+        private int skipped; // Guarded by this; turns skipped since the last probe
+
+        Route(Tier tier, ResilientBackend backend) {
+            this.tier = tier;
+            this.backend = backend;
+        }
+
+        boolean isAvailable() {
+            return backend.getCircuitState() != CircuitBreaker.State.OPEN;
+        }
+
+        // Only once both have been measured; an untried tier gets the benefit of the doubt
+        boolean slowerThan(Route other, boolean streaming) {
+            double mine = (streaming ? firstChunk : wholeReply).averageMillis();
+            double theirs = (streaming ? other.firstChunk : other.wholeReply).averageMillis();
+            return mine > 0 && theirs > 0 && mine > theirs;
+        }
+
+        // False once every PROBE_EVERY skips, when the turn should go here after all
+        synchronized boolean skipForProbe() {
+            if (++skipped < PROBE_EVERY) return true;
+            skipped = 0;
+            return false;
+        }
+
+        String describe() {
+            return tier + " " + getName() + ": first chunk " + firstChunk.describe() + ", whole reply "
+                    + wholeReply.describe() + "; " + backend.getStatsSummary();
+        }
+
+        @Override
+        public String getName() {
+            return backend.getName();
+        }
+
+        @Override
+        public ListenableFuture<String> generate(List<Content> prompt) {
+            final long startedAt = nowMillis();
+            ListenableFuture<String> reply = backend.generate(prompt);
+            // Failures, including instant rejections by an open circuit, say nothing about speed
+            Futures.addCallback(reply, new FutureCallback<String>() {
+                @Override
+                public void onSuccess(String result) {
+                    wholeReply.record(nowMillis() - startedAt);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                }
+            }, MoreExecutors.directExecutor());
+            return reply;
+        }
+
+        @Override
+        public ListenableFuture<Void> stream(List<Content> prompt, StreamListener listener) {
+            final long startedAt = nowMillis();
+            return backend.stream(prompt, new StreamListener() {
+                private boolean first = true;
+
+                @Override
+                public void onChunk(String text) {
+                    if (first) {
+                        first = false;
+                        firstChunk.record(nowMillis() - startedAt);
+                    }
+                    listener.onChunk(text);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    listener.onError(t);
+                }
+
+                @Override
+                public void onComplete() {
+                    listener.onComplete();
+                }
+            });
+        }
+    }
+}
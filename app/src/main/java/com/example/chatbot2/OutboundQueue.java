@@ -0,0 +1,164 @@
+package com.example.chatbot2;
+
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Sends the user's turns in the open session one at a time.
+ * Messages sent while a reply is still pending wait here and go out together as a single turn once
+ * it finishes, so a burst of short messages costs one request instead of racing several.
+ * Only touched on the main thread.
+ */
+public class OutboundQueue {
+
+    private static final String TAG = "OutboundQueue";
+
+    public interface Dispatcher {
+        void dispatch(Batch batch);
+    }
+
+    // One or more user messages sent to the model as one turn
+    public static class Batch {
+        public final List<ChatMessage> messages;
+        public final Bitmap image; // At most one, as a turn replays a single image
+
+        Batch(List<ChatMessage> messages, Bitmap image) {
+            this.messages = Collections.unmodifiableList(messages);
+            this.image = image;
+        }
+
+        public String getText() {
+            StringBuilder text = new StringBuilder();
+            for (ChatMessage message : messages) {
+                String part = message.getMessage();
+                if (part == null || part.isEmpty()) continue;
+                if (text.length() > 0) text.append("\n\n");
+                text.append(part);
+            }
+            return text.toString();
+        }
+
+        // The message carrying the image, else the newest; its row id stands for the whole turn
+        public ChatMessage getPrimaryMessage() {
+            for (ChatMessage message : messages) {
+                if (message.getImageHash() != null) return message;
+            }
+            return messages.get(messages.size() - 1);
+        }
+    }
+
+    private static class Pending {
+        final ChatMessage message;
+        final Bitmap image;
+        final long enqueuedAt = SystemClock.elapsedRealtime();
+
+        Pending(ChatMessage message, Bitmap image) {
+            this.message = message;
+            this.image = image;
+        }
+    }
+
+    private final Dispatcher dispatcher;
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private boolean inFlight;
+
+    private long dispatchedTurns;
+    private long coalescedMessages;
+    private long totalWaitMillis;
+    private long maxWaitMillis;
+    private int maxDepth;
+
+    public OutboundQueue(Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    public void enqueue(ChatMessage message, Bitmap image) {
+        pending.addLast(new Pending(message, image));
+        maxDepth = Math.max(maxDepth, pending.size());
+        if (!inFlight) {
+            dispatchNext();
+        }
+    }
+
+    // Call once per dispatched batch, whether the reply succeeded or failed
+    public void onTurnFinished() {
+        inFlight = false;
+        dispatchNext();
+    }
+
+    // Drops anything not yet sent, e.g. on switching sessions; those messages are already saved
+    public void reset() {
+        if (!pending.isEmpty()) {
+            Log.d(TAG, "Dropped " + pending.size() + " queued messages");
+        }
+        pending.clear();
+        inFlight = false;
+    }
+
+    public boolean isBusy() {
+        return inFlight;
+    }
+
+    public int getDepth() {
+        return pending.size();
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getDispatchedTurns() {
+        return dispatchedTurns;
+    }
+
+    public long getCoalescedMessages() {
+        return coalescedMessages;
+    }
+
+    public long getAverageWaitMillis() {
+        return dispatchedTurns == 0 ? 0 : totalWaitMillis / dispatchedTurns;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public String getStatsSummary() {
+        return "turns=" + dispatchedTurns + ", coalesced=" + coalescedMessages + ", depth=" + getDepth()
+                + ", max depth=" + maxDepth + ", avg wait=" + getAverageWaitMillis()
+                + " ms, max wait=" + maxWaitMillis + " ms";
+    }
+
+    private void dispatchNext() {
+        if (pending.isEmpty()) return;
+
+        // Take everything waiting, stopping before a second image
+        List<ChatMessage> messages = new ArrayList<>();
+        Bitmap image = null;
+        long waited = SystemClock.elapsedRealtime() - pending.peekFirst().enqueuedAt;
+        while (!pending.isEmpty()) {
+            Pending next = pending.peekFirst();
+            if (next.image != null && image != null) break;
+            pending.removeFirst();
+            messages.add(next.message);
+            if (next.image != null) image = next.image;
+        }
+
+        inFlight = true;
+        dispatchedTurns++;
+        coalescedMessages += messages.size() - 1;
+        totalWaitMillis += waited;
+        maxWaitMillis = Math.max(maxWaitMillis, waited);
+        if (messages.size() > 1 || waited > 0) {
+            Log.d(TAG, "Sending " + messages.size() + " messages after " + waited + " ms: " + getStatsSummary());
+        }
+        dispatcher.dispatch(new Batch(messages, image));
+    }
+}
@@ -0,0 +1,491 @@
+package com.example.chatbot2;
+
+import android.util.Log;
+
+import com.google.ai.client.generativeai.type.Content;
+import com.google.ai.client.generativeai.type.RequestTimeoutException;
+import com.google.ai.client.generativeai.type.ServerException;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps a {@link ChatBackend} with the controls a flaky mobile connection needs.
+ * Every attempt has a deadline; retryable failures are tried again after a jittered exponential
+ * backoff, and a circuit breaker fails fast while the backend keeps failing. A request that is
+ * slower than the recent p95 is hedged with a second one: a whole reply against whole-reply
+ * latency, a stream against time to first chunk. The first answer (or first chunk) wins.
+ * Streams are retried and hedged only before their first chunk, since text already shown cannot
+ * be taken back.
+ */
+public class ResilientBackend implements ChatBackend {
+
+    private static final String TAG = "ResilientBackend";
+
+    public static class Policy {
+        final long deadlineMillis;     // A whole reply, per attempt
+        final long firstChunkMillis;   // A stream's first chunk
+        final long chunkGapMillis;     // Silence between chunks before a stream counts as stalled
+        final int maxAttempts;
+        final long backoffBaseMillis;
+        final long backoffMaxMillis;
+        final boolean hedge;
+        final long minHedgeDelayMillis;
+
+        public Policy(long deadlineMillis, long firstChunkMillis, long chunkGapMillis, int maxAttempts,
+                      long backoffBaseMillis, long backoffMaxMillis, boolean hedge, long minHedgeDelayMillis) {
+            this.deadlineMillis = deadlineMillis;
+            this.firstChunkMillis = firstChunkMillis;
+            this.chunkGapMillis = chunkGapMillis;
+            this.maxAttempts = maxAttempts;
+            this.backoffBaseMillis = backoffBaseMillis;
+            this.backoffMaxMillis = backoffMaxMillis;
+            this.hedge = hedge;
+            this.minHedgeDelayMillis = minHedgeDelayMillis;
+        }
+
+        public static final Policy DEFAULT = new Policy(60_000, 20_000, 30_000, 3, 500, 8_000, true, 1_000);
+    }
+
+    // Failed fast because the circuit is open; not worth retrying until it closes
+    public static class BackendUnavailableException extends Exception {
+        BackendUnavailableException(String backend) {
+            super(backend + " is failing repeatedly; not calling it for now");
+        }
+    }
+
+    private final ChatBackend delegate;
+    private final ScheduledExecutorService timer;
+    private final Policy policy;
+    private final CircuitBreaker breaker;
+    private final Ticker ticker;
+    private final LatencyWindow latencies = new LatencyWindow(100); // Whole replies
+    private final LatencyWindow firstChunkLatencies = new LatencyWindow(100); // Streams
+
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ResilientBackend(ChatBackend delegate, ScheduledExecutorService timer, Policy policy, CircuitBreaker breaker) {
+        this(delegate, timer, policy, breaker, CircuitBreaker.ELAPSED_REALTIME);
+    }
+
+    // Tests pass a ticker and a timer that share one virtual clock
+    public ResilientBackend(ChatBackend delegate, ScheduledExecutorService timer, Policy policy, CircuitBreaker breaker,
+                            Ticker ticker) {
+        this.delegate = delegate;
+        this.timer = timer;
+        this.policy = policy;
+        this.breaker = breaker;
+        this.ticker = ticker;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public ListenableFuture<String> generate(List<Content> prompt) {
+        SettableFuture<String> result = SettableFuture.create();
+        new UnaryCall(prompt, result).attempt(1);
+        return result;
+    }
+
+    @Override
+    public ListenableFuture<Void> stream(List<Content> prompt, StreamListener listener) {
+        SettableFuture<Void> handle = SettableFuture.create();
+        new StreamCall(prompt, listener, handle).attempt(1);
+        return handle;
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return breaker.getState();
+    }
+
+    public String getStatsSummary() {
+        return "attempts=" + attempts.get() + ", retries=" + retries.get() + ", timeouts=" + timeouts.get()
+                + ", hedges=" + hedges.get() + " (won " + hedgeWins.get() + "), rejected=" + rejected.get()
+                + ", p95=" + latencies.percentile(95) + " ms, first chunk p95=" + firstChunkLatencies.percentile(95)
+                + " ms, circuit=" + breaker.getState();
+    }
+
+    // Timeouts, connection problems and 5xx responses; bad requests and blocked prompts fail the same way again
+    static boolean isRetryable(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BackendUnavailableException) return false;
+            if (cause instanceof TimeoutException || cause instanceof IOException
+                    || cause instanceof ServerException || cause instanceof RequestTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Full jitter: anywhere between zero and the exponential ceiling, so retrying clients spread out
+    private long backoffMillis(int failedAttempt) {
+        long ceiling = Math.min(policy.backoffMaxMillis, policy.backoffBaseMillis << Math.min(failedAttempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private void recordFailure(Throwable t) {
+        if (t instanceof TimeoutException) timeouts.incrementAndGet();
+        if (isRetryable(t)) breaker.onFailure();
+    }
+
+    // Zero while hedging is off or there are too few samples to know what slow looks like
+    private long hedgeDelayMillis(LatencyWindow window) {
+        if (!policy.hedge) return 0;
+        long p95 = window.percentile(95);
+        return p95 == 0 ? 0 : Math.max(policy.minHedgeDelayMillis, p95);
+    }
+
+    private long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ticker.read());
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof ExecutionException && t.getCause() != null ? t.getCause() : t;
+    }
+
+    // --- Whole replies ---
+
+    private class UnaryCall {
+        final List<Content> prompt;
+        final SettableFuture<String> result;
+        final List<ListenableFuture<String>> running = new ArrayList<>(); // Guarded by this
+        int outstanding; // Requests of the current attempt still running, guarded by this
+
+        UnaryCall(List<Content> prompt, SettableFuture<String> result) {
+            this.prompt = prompt;
+            this.result = result;
+            result.addListener(this::cancelRunning, MoreExecutors.directExecutor());
+        }
+
+        void attempt(int number) {
+            if (result.isDone()) return;
+            if (!breaker.allowRequest()) {
+                rejected.incrementAndGet();
+                result.setException(new BackendUnavailableException(delegate.getName()));
+                return;
+            }
+            ListenableFuture<String> primary = launch(number, false);
+
+            long hedgeDelay = hedgeDelayMillis(latencies);
+            if (hedgeDelay > 0) {
+                timer.schedule(() -> {
+                    if (primary.isDone() || result.isDone() || !breaker.allowRequest()) return;
+                    hedges.incrementAndGet();
+                    launch(number, true);
+                }, hedgeDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        ListenableFuture<String> launch(int number, boolean hedged) {
+            attempts.incrementAndGet();
+            final long startedAt = nowMillis();
+            ListenableFuture<String> request = Futures.withTimeout(delegate.generate(prompt),
+                    policy.deadlineMillis, TimeUnit.MILLISECONDS, timer);
+            synchronized (this) {
+                running.add(request);
+                outstanding++;
+            }
+            Futures.addCallback(request, new FutureCallback<String>() {
+                @Override
+                public void onSuccess(String text) {
+                    synchronized (UnaryCall.this) {
+                        running.remove(request);
+                        outstanding--;
+                    }
+                    latencies.record(nowMillis() - startedAt);
+                    breaker.onSuccess();
+                    if (result.set(text) && hedged) hedgeWins.incrementAndGet();
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    boolean attemptFailed;
+                    synchronized (UnaryCall.this) {
+                        running.remove(request);
+                        outstanding--;
+                        attemptFailed = outstanding == 0;
+                    }
+                    if (t instanceof CancellationException || result.isDone()) return;
+                    Throwable error = unwrap(t);
+                    recordFailure(error);
+                    if (attemptFailed) onAttemptFailed(number, error); // A hedge may still answer otherwise
+                }
+            }, MoreExecutors.directExecutor());
+            return request;
+        }
+
+        void onAttemptFailed(int number, Throwable error) {
+            if (!isRetryable(error) || number >= policy.maxAttempts) {
+                result.setException(error);
+                return;
+            }
+            long delay = backoffMillis(number);
+            Log.w(TAG, delegate.getName() + " attempt " + number + " failed (" + error + "), retrying in " + delay + " ms");
+            retries.incrementAndGet();
+            timer.schedule(() -> attempt(number + 1), delay, TimeUnit.MILLISECONDS);
+        }
+
+        // Once there is an answer (or the caller gave up) the other requests are wasted
+        void cancelRunning() {
+            List<ListenableFuture<String>> toCancel;
+            synchronized (this) {
+                toCancel = new ArrayList<>(running);
+            }
+            for (ListenableFuture<String> request : toCancel) {
+                request.cancel(true);
+            }
+        }
+    }
+
+    // --- Streams ---
+
+    private class StreamCall {
+        final List<Content> prompt;
+        final StreamListener listener;
+        final SettableFuture<Void> handle;
+
+        // Guarded by this
+        int attempt;
+        boolean chunkSeen;
+        final List<Launch> live = new ArrayList<>(); // Requests of the current attempt still running
+        Launch winner; // The request whose chunks are shown; null until the first chunk
+        ScheduledFuture<?> watchdog;
+
+        // One request of an attempt: the primary, or the hedge sent when the first chunk is late
+        class Launch {
+            final int number;
+            final boolean hedged;
+            final long startedAt = nowMillis();
+            ListenableFuture<Void> request;
+
+            Launch(int number, boolean hedged) {
+                this.number = number;
+                this.hedged = hedged;
+            }
+        }
+
+        StreamCall(List<Content> prompt, StreamListener listener, SettableFuture<Void> handle) {
+            this.prompt = prompt;
+            this.listener = listener;
+            this.handle = handle;
+            handle.addListener(() -> {
+                if (handle.isCancelled()) stopAll();
+            }, MoreExecutors.directExecutor());
+        }
+
+        void attempt(int number) {
+            if (handle.isDone()) return;
+            if (!breaker.allowRequest()) {
+                rejected.incrementAndGet();
+                finish(new BackendUnavailableException(delegate.getName()));
+                return;
+            }
+            synchronized (this) {
+                attempt = number;
+                winner = null;
+                armWatchdog(number, policy.firstChunkMillis);
+            }
+            launch(number, false);
+
+            // A stream is hedged on its first chunk; once text is shown it cannot switch requests
+            long hedgeDelay = hedgeDelayMillis(firstChunkLatencies);
+            if (hedgeDelay > 0 && hedgeDelay < policy.firstChunkMillis) {
+                timer.schedule(() -> {
+                    synchronized (StreamCall.this) {
+                        if (attempt != number || winner != null || handle.isDone()) return;
+                    }
+                    if (!breaker.allowRequest()) return;
+                    hedges.incrementAndGet();
+                    launch(number, true);
+                }, hedgeDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void launch(int number, boolean hedged) {
+            attempts.incrementAndGet();
+            Launch launch = new Launch(number, hedged);
+            synchronized (this) {
+                live.add(launch);
+            }
+            ListenableFuture<Void> request = delegate.stream(prompt, new StreamListener() {
+                @Override
+                public void onChunk(String text) {
+                    synchronized (StreamCall.this) {
+                        if (attempt != number || handle.isDone()) return;
+                        if (winner == null) {
+                            takeLead(launch);
+                        } else if (winner != launch) {
+                            return;
+                        }
+                        chunkSeen = true;
+                        armWatchdog(number, policy.chunkGapMillis);
+                        listener.onChunk(text); // Under the lock so chunks never overtake a timeout
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    synchronized (StreamCall.this) {
+                        if (attempt != number || (winner != null && winner != launch)) return;
+                        live.remove(launch);
+                        if (winner == null && !live.isEmpty()) {
+                            // The other request of this attempt may still answer
+                            recordFailure(t);
+                            return;
+                        }
+                    }
+                    onAttemptFailed(number, t);
+                }
+
+                @Override
+                public void onComplete() {
+                    synchronized (StreamCall.this) {
+                        if (attempt != number || (winner != null && winner != launch)) return;
+                        if (winner == null) {
+                            takeLead(launch); // An empty reply
+                        }
+                        if (!handle.set(null)) return;
+                        live.clear();
+                        cancelWatchdog();
+                    }
+                    breaker.onSuccess();
+                    listener.onComplete();
+                }
+            });
+            synchronized (this) {
+                if (live.contains(launch)) {
+                    launch.request = request;
+                    return;
+                }
+            }
+            request.cancel(true); // Lost to the other request, or the attempt ended, before it returned
+        }
+
+        // Called with the lock held: the first request to produce text wins and the other is stopped
+        void takeLead(Launch launch) {
+            winner = launch;
+            firstChunkLatencies.record(nowMillis() - launch.startedAt);
+            if (launch.hedged) hedgeWins.incrementAndGet();
+            for (Launch other : live) {
+                if (other != launch && other.request != null) other.request.cancel(true);
+            }
+            live.clear();
+            live.add(launch);
+        }
+
+        // Called with the lock held
+        void armWatchdog(int number, long millis) {
+            cancelWatchdog();
+            watchdog = timer.schedule(() -> {
+                synchronized (StreamCall.this) {
+                    if (attempt != number) return;
+                }
+                onAttemptFailed(number, new TimeoutException("No reply chunk for " + millis + " ms"));
+            }, millis, TimeUnit.MILLISECONDS);
+        }
+
+        // Called with the lock held
+        void cancelWatchdog() {
+            if (watchdog != null) {
+                watchdog.cancel(false);
+                watchdog = null;
+            }
+        }
+
+        void onAttemptFailed(int number, Throwable error) {
+            boolean retry;
+            List<Launch> failed;
+            synchronized (this) {
+                if (attempt != number || handle.isDone()) return;
+                attempt = -number; // Later callbacks from this attempt are ignored
+                cancelWatchdog();
+                failed = new ArrayList<>(live);
+                live.clear();
+                retry = !chunkSeen && isRetryable(error) && number < policy.maxAttempts;
+            }
+            cancel(failed);
+            recordFailure(error);
+            if (!retry) {
+                finish(error);
+                return;
+            }
+            long delay = backoffMillis(number);
+            Log.w(TAG, delegate.getName() + " stream attempt " + number + " failed (" + error + "), retrying in " + delay + " ms");
+            retries.incrementAndGet();
+            timer.schedule(() -> attempt(number + 1), delay, TimeUnit.MILLISECONDS);
+        }
+
+        void finish(Throwable error) {
+            if (handle.set(null)) listener.onError(error);
+        }
+
+        void stopAll() {
+            List<Launch> running;
+            synchronized (this) {
+                cancelWatchdog();
+                running = new ArrayList<>(live);
+                live.clear();
+            }
+            cancel(running);
+        }
+
+        private void cancel(List<Launch> launches) {
+            for (Launch launch : launches) {
+                if (launch.request != null) launch.request.cancel(true);
+            }
+        }
+    }
+
+    // --- Latency ---
+
+    // The last few successful reply times, enough for a rough tail percentile
+    private static class LatencyWindow {
+        private static final int MIN_SAMPLES = 20;
+
+        private final long[] samples;
+        private int count;
+        private int next;
+
+        LatencyWindow(int size) {
+            samples = new long[size];
+        }
+
+        synchronized void record(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        // Zero until there are enough samples to be meaningful
+        synchronized long percentile(int percent) {
+            if (count < MIN_SAMPLES) return 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[Math.min(count - 1, count * percent / 100)];
+        }
+    }
+}
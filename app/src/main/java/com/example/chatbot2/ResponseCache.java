@@ -0,0 +1,170 @@
+package com.example.chatbot2;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.example.chatbot2.db.CachedResponse;
+import com.example.chatbot2.db.ResponseCacheDao;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in cache of model replies for repeated, stateless prompts.
+ * An in-memory LRU sits in front of the Room table; the table is trimmed by age (TTL) and by
+ * total size, least recently used first.
+ */
+public class ResponseCache {
+
+    private static final String TAG = "ResponseCache";
+
+    public static final String PREF_ENABLED = "response_cache_enabled";
+    public static final int DEFAULT_MEMORY_BYTES = 256 * 1024;
+    public static final long DEFAULT_DISK_BYTES = 4L * 1024 * 1024;
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final int EVICTION_BATCH = 20;
+
+    // Delivered on the main thread; response is null on a miss
+    public interface LookupCallback {
+        void onResult(String response);
+    }
+
+    private static class Entry {
+        final String response;
+        final long createdAt;
+
+        Entry(String response, long createdAt) {
+            this.response = response;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private final ResponseCacheDao dao;
+    private final Executor readExecutor;
+    private final Executor writeExecutor;
+    private final long maxDiskBytes;
+    private final long ttlMillis;
+    private final LruCache<String, Entry> memory;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ResponseCache(ResponseCacheDao dao, Executor readExecutor, Executor writeExecutor,
+                         int maxMemoryBytes, long maxDiskBytes, long ttlMillis) {
+        this.dao = dao;
+        this.readExecutor = readExecutor;
+        this.writeExecutor = writeExecutor;
+        this.maxDiskBytes = maxDiskBytes;
+        this.ttlMillis = ttlMillis;
+        this.memory = new LruCache<String, Entry>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return byteSize(entry.response);
+            }
+        };
+    }
+
+    // Prompts differing only in case and whitespace share an entry
+    public static String buildKey(String prompt, String historyFingerprint, String modelName, String configKey) {
+        String normalized = prompt == null ? "" : prompt.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        String material = normalized + '\u0000' + historyFingerprint + '\u0000' + modelName + '\u0000' + configKey;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(material.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Memory hits are answered synchronously; otherwise the table is checked on the executor
+    public void lookup(String key, LookupCallback callback) {
+        long now = System.currentTimeMillis();
+        Entry entry = memory.get(key);
+        if (entry != null && now - entry.createdAt <= ttlMillis) {
+            memoryHits.incrementAndGet();
+            callback.onResult(entry.response);
+            return;
+        }
+
+        readExecutor.execute(() -> {
+            CachedResponse cached = dao.get(key);
+            String response = null;
+            if (cached != null && now - cached.createdAt <= ttlMillis) {
+                response = cached.response;
+                writeExecutor.execute(() -> dao.touch(key, now));
+                memory.put(key, new Entry(cached.response, cached.createdAt));
+                diskHits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+            }
+            final String result = response;
+            mainHandler.post(() -> callback.onResult(result));
+        });
+    }
+
+    public void put(String key, String response) {
+        if (response == null || response.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        memory.put(key, new Entry(response, now));
+
+        writeExecutor.execute(() -> {
+            dao.put(new CachedResponse(key, response, now, now, byteSize(response)));
+            evict(now);
+        });
+    }
+
+    public void clear() {
+        memory.evictAll();
+        writeExecutor.execute(dao::clear);
+    }
+
+    private void evict(long now) {
+        int expired = dao.deleteCreatedBefore(now - ttlMillis);
+        int trimmed = 0;
+        while (dao.getTotalSize() > maxDiskBytes) {
+            int deleted = dao.deleteLeastRecentlyUsed(EVICTION_BATCH);
+            if (deleted == 0) break;
+            trimmed += deleted;
+        }
+        if (expired + trimmed > 0) {
+            Log.d(TAG, "Evicted " + expired + " expired and " + trimmed + " least recently used entries");
+        }
+    }
+
+    private static int byteSize(String response) {
+        return response.length() * 2; // UTF-16 chars
+    }
+
+    // --- Stats ---
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public String getStatsSummary() {
+        return "memory hits=" + getMemoryHits() + ", disk hits=" + getDiskHits() + ", misses=" + getMisses();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.chatbot2;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Records how long each frame took while a list is being scrolled, from the window's FrameMetrics.
+ * A frame that took longer than one refresh interval missed its vsync and is counted as janky.
+ * Metrics are delivered on a thread of their own so measuring does not add to the main thread.
+ */
+public class ScrollJankTracker extends RecyclerView.OnScrollListener implements Window.OnFrameMetricsAvailableListener {
+
+    private final long frameBudgetNanos;
+    private volatile boolean scrolling;
+    private HandlerThread metricsThread;
+
+    public ScrollJankTracker(float refreshRate) {
+        this.frameBudgetNanos = (long) (1_000_000_000L / (refreshRate > 0 ? refreshRate : 60f));
+    }
+
+    public void attach(Window window, RecyclerView list) {
+        metricsThread = new HandlerThread("frame-metrics");
+        metricsThread.start();
+        window.addOnFrameMetricsAvailableListener(this, new Handler(metricsThread.getLooper()));
+        list.addOnScrollListener(this);
+    }
+
+    public void detach(Window window, RecyclerView list) {
+        list.removeOnScrollListener(this);
+        window.removeOnFrameMetricsAvailableListener(this);
+        metricsThread.quitSafely();
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+        scrolling = newState != RecyclerView.SCROLL_STATE_IDLE;
+    }
+
+    @Override
+    public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCountSinceLastInvocation) {
+        if (!scrolling) return;
+        long totalNanos = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+        Metrics metrics = Metrics.get();
+        metrics.recordMicros(Metrics.FRAME_SCROLL, totalNanos / 1000);
+        if (totalNanos > frameBudgetNanos) {
+            metrics.increment(Metrics.FRAME_SCROLL_JANKY);
+        }
+    }
+}
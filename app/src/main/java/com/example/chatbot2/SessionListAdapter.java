@@ -0,0 +1,114 @@
+package com.example.chatbot2;
+
+import android.content.res.Resources;
+import android.text.format.DateUtils;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.paging.PagingDataAdapter;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.chatbot2.db.SessionPreview;
+
+import java.util.Locale;
+
+// Drawer history list; pages and diffs come from the Room PagingSource, so only changed rows rebind
+public class SessionListAdapter extends PagingDataAdapter<SessionPreview, SessionListAdapter.SessionViewHolder> {
+
+    public interface Listener {
+        void onSessionClicked(long sessionId);
+    }
+
+    private static final DiffUtil.ItemCallback<SessionPreview> DIFF_CALLBACK = new DiffUtil.ItemCallback<SessionPreview>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull SessionPreview oldItem, @NonNull SessionPreview newItem) {
+            return oldItem.sessionId == newItem.sessionId;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull SessionPreview oldItem, @NonNull SessionPreview newItem) {
+            return oldItem.sameContentAs(newItem);
+        }
+    };
+
+    private final Listener listener;
+    private long selectedSessionId = SessionState.NO_SESSION;
+
+    public SessionListAdapter(Listener listener) {
+        super(DIFF_CALLBACK);
+        this.listener = listener;
+    }
+
+    public static class SessionViewHolder extends RecyclerView.ViewHolder {
+        final TextView title;
+        final TextView preview;
+        final TextView details;
+
+        SessionViewHolder(@NonNull View itemView) {
+            super(itemView);
+            title = itemView.findViewById(R.id.session_title);
+            preview = itemView.findViewById(R.id.session_preview);
+            details = itemView.findViewById(R.id.session_details);
+        }
+    }
+
+    // Highlights the open session; only the old and new rows are rebound
+    public void setSelectedSessionId(long sessionId) {
+        if (sessionId == selectedSessionId) return;
+        long previous = selectedSessionId;
+        selectedSessionId = sessionId;
+        notifySessionChanged(previous);
+        notifySessionChanged(sessionId);
+    }
+
+    private void notifySessionChanged(long sessionId) {
+        // Only looks at loaded rows; unloaded ones pick up the selection when they bind
+        for (int i = 0; i < getItemCount(); i++) {
+            SessionPreview item = peek(i);
+            if (item != null && item.sessionId == sessionId) {
+                notifyItemChanged(i);
+                return;
+            }
+        }
+    }
+
+    @NonNull
+    @Override
+    public SessionViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_session, parent, false);
+        return new SessionViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull SessionViewHolder holder, int position) {
+        SessionPreview session = getItem(position);
+        if (session == null) {
+            // Placeholder while its page loads
+            holder.title.setText("");
+            holder.preview.setText("");
+            holder.details.setText("");
+            holder.itemView.setActivated(false);
+            holder.itemView.setOnClickListener(null);
+            return;
+        }
+        holder.title.setText(session.title);
+        holder.preview.setText(session.lastMessagePreview != null ? session.lastMessagePreview : "");
+        holder.details.setText(holder.itemView.getResources().getQuantityString(
+                R.plurals.session_message_count, session.messageCount, session.messageCount)
+                + " · " + formatTokens(holder.itemView.getResources(), session.totalTokens)
+                + " · " + DateUtils.getRelativeTimeSpanString(session.updatedAt));
+        holder.itemView.setActivated(session.sessionId == selectedSessionId);
+        holder.itemView.setOnClickListener(v -> listener.onSessionClicked(session.sessionId));
+    }
+
+    // Compact, e.g. "~850 tokens" or "~12.4k tokens"
+    private static String formatTokens(Resources resources, long tokens) {
+        String amount = tokens < 1000 ? String.valueOf(tokens)
+                : String.format(Locale.getDefault(), "%.1fk", tokens / 1000.0);
+        return resources.getString(R.string.session_tokens, amount);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.chatbot2;
+
+/**
+ * The open chat session, shared between the UI thread and the work lanes.
+ * Every switch bumps a generation number so late results from an earlier session can be detected
+ * and dropped instead of landing in the wrong chat.
+ */
+public class SessionState {
+
+    public static final long NO_SESSION = -1;
+
+    private long sessionId = NO_SESSION;
+    private int generation;
+
+    // Opens another session (or a new, unsaved chat) and returns its generation
+    public synchronized int switchTo(long sessionId) {
+        this.sessionId = sessionId;
+        return ++generation;
+    }
+
+    // Same chat, new id: a first message gave it a (placeholder) session id
+    public synchronized void assign(long sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    // Swaps a placeholder for the real row id, unless the user has moved on meanwhile
+    public synchronized boolean replace(long expectedId, long newId) {
+        if (sessionId != expectedId) {
+            return false;
+        }
+        sessionId = newId;
+        return true;
+    }
+
+    public synchronized long getSessionId() {
+        return sessionId;
+    }
+
+    public synchronized int getGeneration() {
+        return generation;
+    }
+
+    public synchronized boolean isCurrent(int generation) {
+        return this.generation == generation;
+    }
+}
@@ -0,0 +1,373 @@
+package com.example.chatbot2;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.speech.tts.Voice;
+import android.util.Log;
+
+import androidx.core.util.Consumer;
+
+import com.example.chatbot2.core.SpeechChunker;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads replies aloud one sentence at a time, so the first sentence plays while the rest are queued
+ * (or, for a streaming reply, still arriving). Markdown is stripped by {@link SpeechChunker}.
+ * Sentences are rendered to audio files while the engine is idle; a sentence heard before, such as
+ * a repeated reply, is then played from the file instead of being synthesized again. The files
+ * form an LRU cache capped at maxCacheBytes. Every method must be called on the main thread.
+ */
+public class Speaker {
+
+    private static final String TAG = "TTS";
+
+    public static final String PREF_READ_ALOUD = "read_replies_aloud";
+    public static final long DEFAULT_CACHE_BYTES = 16L * 1024 * 1024;
+
+    private static final String CACHE_DIR = "tts";
+    private static final String AUDIO_SUFFIX = ".wav";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String SYNTHESIS_ID_PREFIX = "cache-";
+    private static final int MAX_TO_SYNTHESIZE = 50; // Sentences waiting to be cached; older ones are dropped
+
+    private final Context context;
+    private final Executor ioExecutor;
+    private final long maxCacheBytes;
+    private final Consumer<String> onError;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final File cacheDir;
+
+    private TextToSpeech textToSpeech;
+    private boolean ready;
+    private String voiceKey = "";
+    private final List<String> pending = new ArrayList<>(); // Queued before the engine was up
+    private final Set<String> playing = new HashSet<>(); // Utterance ids not yet finished
+    private int utteranceCounter;
+    private SpeechChunker stream; // Non-null while a streamed reply is being read
+
+    // Sentence cache: key -> audio file, least recently used first; guarded by itself
+    private final LinkedHashMap<String, File> cached = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private final Set<String> registeredEarcons = new HashSet<>();
+    private final LinkedHashMap<String, String> toSynthesize = new LinkedHashMap<>(); // key -> sentence
+    private String synthesizingId; // Set from the call until onFinished or a cancel clears it
+    private String synthesizingKey;
+    private String synthesizingSentence;
+
+    private int cacheHits;
+    private int cacheMisses;
+    private int synthesized;
+
+    public Speaker(Context context, Executor ioExecutor, long maxCacheBytes, Consumer<String> onError) {
+        this.context = context.getApplicationContext();
+        this.ioExecutor = ioExecutor;
+        this.maxCacheBytes = maxCacheBytes;
+        this.onError = onError;
+        this.cacheDir = new File(this.context.getCacheDir(), CACHE_DIR);
+    }
+
+    // Binding the engine is slow; sentences spoken before it is ready are played once it is
+    public void init() {
+        if (textToSpeech != null) return;
+        ioExecutor.execute(this::loadCacheIndex);
+        textToSpeech = new TextToSpeech(context, status -> {
+            if (textToSpeech == null) return; // Shut down before it was ready
+            if (status != TextToSpeech.SUCCESS) {
+                Log.e(TAG, "Initialization failed");
+                onError.accept("TTS Initialization failed.");
+                return;
+            }
+            int result = textToSpeech.setLanguage(Locale.US);
+            if (result == TextToSpeech.LANG_MISSING_DATA || result == TextToSpeech.LANG_NOT_SUPPORTED) {
+                Log.e(TAG, "Language not supported");
+                onError.accept("TTS Language not supported.");
+                return;
+            }
+            Voice voice = textToSpeech.getVoice();
+            voiceKey = voice != null ? voice.getName() : Locale.US.toLanguageTag();
+            textToSpeech.setOnUtteranceProgressListener(new ProgressListener());
+            ready = true;
+            List<String> queued = new ArrayList<>(pending);
+            pending.clear();
+            for (String sentence : queued) {
+                enqueue(sentence);
+            }
+        });
+    }
+
+    public boolean isInitialized() {
+        return textToSpeech != null;
+    }
+
+    // --- Speaking ---
+
+    // Replaces whatever is playing with this text
+    public void speak(String markdown) {
+        stop();
+        for (String sentence : SpeechChunker.split(markdown)) {
+            enqueue(sentence);
+        }
+    }
+
+    // A reply is about to stream in; stops anything still playing
+    public void beginStream() {
+        stop();
+        stream = new SpeechChunker();
+    }
+
+    // Each sentence is queued as soon as its end arrives
+    public void appendStream(String chunk) {
+        if (stream == null) return;
+        for (String sentence : stream.append(chunk)) {
+            enqueue(sentence);
+        }
+    }
+
+    public void endStream() {
+        if (stream == null) return;
+        List<String> rest = stream.finish();
+        stream = null;
+        for (String sentence : rest) {
+            enqueue(sentence);
+        }
+        synthesizeNextIfIdle();
+    }
+
+    public void stop() {
+        stream = null;
+        pending.clear();
+        playing.clear();
+        if (textToSpeech != null) {
+            textToSpeech.stop();
+            requeueSynthesis();
+        }
+    }
+
+    public void shutdown() {
+        stop();
+        if (textToSpeech != null) {
+            textToSpeech.shutdown();
+            textToSpeech = null;
+        }
+        ready = false;
+    }
+
+    private void enqueue(String sentence) {
+        if (!ready) {
+            pending.add(sentence);
+            return;
+        }
+        if (synthesizingKey != null) {
+            // Caching shares the engine's queue and would hold up playback. Only the first sentence
+            // may stop it: onFinished comes later, and stopping again would cut the ones queued since
+            textToSpeech.stop();
+            requeueSynthesis();
+        }
+        String key = cacheKey(sentence);
+        String utteranceId = "say-" + (++utteranceCounter);
+        File audio;
+        synchronized (cached) {
+            audio = cached.get(key);
+        }
+        int result;
+        if (audio != null) {
+            cacheHits++;
+            if (registeredEarcons.add(key)) {
+                textToSpeech.addEarcon(key, audio);
+            }
+            result = textToSpeech.playEarcon(key, TextToSpeech.QUEUE_ADD, null, utteranceId);
+            ioExecutor.execute(() -> audio.setLastModified(System.currentTimeMillis()));
+        } else {
+            cacheMisses++;
+            result = textToSpeech.speak(sentence, TextToSpeech.QUEUE_ADD, null, utteranceId);
+            toSynthesize.remove(key);
+            toSynthesize.put(key, sentence);
+            if (toSynthesize.size() > MAX_TO_SYNTHESIZE) {
+                Iterator<String> oldest = toSynthesize.keySet().iterator();
+                oldest.next();
+                oldest.remove();
+            }
+        }
+        if (result == TextToSpeech.SUCCESS) {
+            playing.add(utteranceId);
+        }
+    }
+
+    // --- Audio Cache ---
+
+    // The voice is part of the key, so switching voices never replays audio in the old one
+    private String cacheKey(String sentence) {
+        String material = voiceKey + '\u0000' + sentence;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(material.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    // Renders one sentence at a time, only while nothing is playing or streaming
+    private void synthesizeNextIfIdle() {
+        if (!ready || synthesizingKey != null || !playing.isEmpty() || stream != null || !pending.isEmpty()) return;
+        Iterator<Map.Entry<String, String>> next = toSynthesize.entrySet().iterator();
+        Map.Entry<String, String> entry;
+        do {
+            if (!next.hasNext()) return;
+            entry = next.next();
+            next.remove();
+        } while (isCached(entry.getKey())); // Finished just as it was cancelled
+
+        String key = entry.getKey();
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) return;
+        File temp = new File(cacheDir, key + TEMP_SUFFIX);
+        // Numbered, so a late onStop from a cancelled run cannot end a newer run of the same sentence
+        String utteranceId = SYNTHESIS_ID_PREFIX + (++utteranceCounter) + "-" + key;
+        int result = textToSpeech.synthesizeToFile(entry.getValue(), null, temp, utteranceId);
+        if (result == TextToSpeech.SUCCESS) {
+            synthesizingId = utteranceId;
+            synthesizingKey = key;
+            synthesizingSentence = entry.getValue();
+        }
+    }
+
+    // After textToSpeech.stop() cut a synthesis short; it is tried again the next time the engine is idle
+    private void requeueSynthesis() {
+        if (synthesizingKey == null) return;
+        toSynthesize.put(synthesizingKey, synthesizingSentence);
+        synthesizingId = null;
+        synthesizingKey = null;
+        synthesizingSentence = null;
+    }
+
+    private boolean isCached(String key) {
+        synchronized (cached) {
+            return cached.containsKey(key);
+        }
+    }
+
+    // Called on ioExecutor with the finished temp file
+    private void commitSynthesized(String key) {
+        File temp = new File(cacheDir, key + TEMP_SUFFIX);
+        File audio = new File(cacheDir, key + AUDIO_SUFFIX);
+        if (temp.length() == 0 || !temp.renameTo(audio)) {
+            temp.delete();
+            return;
+        }
+        List<File> evicted = new ArrayList<>();
+        synchronized (cached) {
+            File previous = cached.put(key, audio);
+            if (previous == null) {
+                cachedBytes += audio.length();
+            }
+            Iterator<Map.Entry<String, File>> eldest = cached.entrySet().iterator();
+            while (cachedBytes > maxCacheBytes && eldest.hasNext()) {
+                Map.Entry<String, File> entry = eldest.next();
+                if (entry.getKey().equals(key)) break;
+                cachedBytes -= entry.getValue().length();
+                evicted.add(entry.getValue());
+                eldest.remove();
+            }
+        }
+        for (File file : evicted) {
+            file.delete();
+        }
+    }
+
+    // Rebuilt from the files, least recently played first, so the order survives restarts
+    private void loadCacheIndex() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        synchronized (cached) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    file.delete(); // Left by a synthesis the process did not live to finish
+                } else if (name.endsWith(AUDIO_SUFFIX)) {
+                    cached.put(name.substring(0, name.length() - AUDIO_SUFFIX.length()), file);
+                    cachedBytes += file.length();
+                }
+            }
+        }
+    }
+
+    private class ProgressListener extends UtteranceProgressListener {
+        @Override
+        public void onStart(String utteranceId) {
+        }
+
+        @Override
+        public void onDone(String utteranceId) {
+            mainHandler.post(() -> onFinished(utteranceId, true));
+        }
+
+        @Override
+        public void onError(String utteranceId) {
+            mainHandler.post(() -> onFinished(utteranceId, false));
+        }
+
+        @Override
+        public void onStop(String utteranceId, boolean interrupted) {
+            mainHandler.post(() -> onFinished(utteranceId, false));
+        }
+    }
+
+    private void onFinished(String utteranceId, boolean done) {
+        if (utteranceId != null && utteranceId.startsWith(SYNTHESIS_ID_PREFIX)) {
+            String key = utteranceId.substring(utteranceId.indexOf('-', SYNTHESIS_ID_PREFIX.length()) + 1);
+            boolean current = utteranceId.equals(synthesizingId);
+            if (current) {
+                synthesizingId = null;
+                synthesizingKey = null;
+                synthesizingSentence = null;
+            }
+            if (!current && key.equals(synthesizingKey)) {
+                // A newer run of the same sentence is writing the temp file; leave it to that run
+            } else if (done) {
+                synthesized++;
+                ioExecutor.execute(() -> commitSynthesized(key));
+            } else {
+                ioExecutor.execute(() -> new File(cacheDir, key + TEMP_SUFFIX).delete());
+            }
+        } else {
+            playing.remove(utteranceId);
+        }
+        if (textToSpeech != null) {
+            synthesizeNextIfIdle();
+        }
+    }
+
+    public String getStatsSummary() {
+        int entries;
+        long bytes;
+        synchronized (cached) {
+            entries = cached.size();
+            bytes = cachedBytes;
+        }
+        return "cached sentences=" + entries + " (" + bytes / 1024 + " KB), hits=" + cacheHits
+                + ", misses=" + cacheMisses + ", synthesized=" + synthesized;
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.chatbot2;
+
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+import android.view.View;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs startup as a small dependency graph instead of one long onCreate.
+ * Owned by ChatViewModel, so it runs once per launch rather than once per activity instance.
+ * Each step names the executor it runs on and the steps it needs; independent steps start together.
+ * Deferred steps wait for the first idle moment after the first frame, or for their first use.
+ * Every step is traced and its queue and run times are logged so cold-start regressions stand out.
+ */
+public class StartupCoordinator {
+
+    private static final String TAG = "Startup";
+
+    private static class Step {
+        final String name;
+        final Executor executor;
+        final Runnable work;
+        final List<String> dependencies;
+        final boolean deferred;
+        final SettableFuture<Void> done = SettableFuture.create();
+        boolean scheduled; // Main thread only
+        volatile long scheduledAt;
+        volatile long startedAt;
+        volatile long finishedAt;
+
+        Step(String name, Executor executor, Runnable work, List<String> dependencies, boolean deferred) {
+            this.name = name;
+            this.executor = executor;
+            this.work = work;
+            this.dependencies = dependencies;
+            this.deferred = deferred;
+        }
+    }
+
+    private final Executor mainExecutor;
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final long createdAt = SystemClock.elapsedRealtime();
+    private boolean reported;
+
+    public StartupCoordinator(Executor mainExecutor) {
+        this.mainExecutor = mainExecutor;
+    }
+
+    public StartupCoordinator step(String name, Executor executor, Runnable work, String... dependsOn) {
+        return add(new Step(name, executor, work, Arrays.asList(dependsOn), false));
+    }
+
+    // Not needed for the first frame: started once the app is idle after it, or by ensureStarted()
+    public StartupCoordinator deferredStep(String name, Executor executor, Runnable work, String... dependsOn) {
+        return add(new Step(name, executor, work, Arrays.asList(dependsOn), true));
+    }
+
+    private StartupCoordinator add(Step step) {
+        for (String dependency : step.dependencies) {
+            if (!steps.containsKey(dependency)) {
+                throw new IllegalArgumentException(step.name + " depends on unknown step " + dependency);
+            }
+        }
+        steps.put(step.name, step);
+        return this;
+    }
+
+    // Call on the main thread once all steps are added
+    public void start(View firstFrameView) {
+        for (Step step : steps.values()) {
+            if (!step.deferred) {
+                schedule(step);
+            }
+        }
+        // A view's posted runnable runs after its first traversal; the idle handler then waits for a quiet queue
+        firstFrameView.post(() -> Looper.myQueue().addIdleHandler(() -> {
+            for (Step step : steps.values()) {
+                schedule(step);
+            }
+            return false;
+        }));
+    }
+
+    // Starts a deferred step (and what it needs) now, e.g. because the user reached for it
+    public void ensureStarted(String name) {
+        schedule(requireStep(name));
+    }
+
+    // Runs action on the main thread once the step has finished; immediately if it already has
+    public void runAfter(String name, Runnable action) {
+        Step step = requireStep(name);
+        schedule(step);
+        if (step.done.isDone()) {
+            if (succeeded(step)) action.run();
+            return;
+        }
+        step.done.addListener(() -> {
+            if (succeeded(step)) action.run();
+        }, mainExecutor);
+    }
+
+    private void schedule(Step step) {
+        if (step.scheduled) return;
+        step.scheduled = true;
+        step.scheduledAt = SystemClock.elapsedRealtime();
+
+        List<ListenableFuture<Void>> dependencies = new ArrayList<>();
+        for (String name : step.dependencies) {
+            Step dependency = steps.get(name);
+            schedule(dependency);
+            dependencies.add(dependency.done);
+        }
+
+        ListenableFuture<List<Void>> ready = Futures.allAsList(dependencies);
+        ready.addListener(() -> {
+            if (!succeeded(ready)) {
+                step.done.setException(new IllegalStateException(step.name + " skipped: a dependency failed"));
+                mainExecutor.execute(() -> onFinished(step));
+                return;
+            }
+            step.executor.execute(() -> run(step));
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void run(Step step) {
+        step.startedAt = SystemClock.elapsedRealtime();
+        Trace.beginSection("startup:" + step.name);
+        try {
+            step.work.run();
+            step.finishedAt = SystemClock.elapsedRealtime();
+            step.done.set(null);
+        } catch (Throwable t) {
+            // Errors too (e.g. a missing native library): a step that never completes hangs everything after it
+            step.finishedAt = SystemClock.elapsedRealtime();
+            Log.e(TAG, "Step " + step.name + " failed", t);
+            step.done.setException(t);
+            if (t instanceof Error) {
+                mainExecutor.execute(() -> onFinished(step));
+                throw (Error) t;
+            }
+        } finally {
+            Trace.endSection();
+        }
+        mainExecutor.execute(() -> onFinished(step));
+    }
+
+    // Main thread
+    private void onFinished(Step step) {
+        if (step.deferred) {
+            Log.d(TAG, describe(step) + " (deferred)");
+            return;
+        }
+        for (Step other : steps.values()) {
+            if (!other.deferred && !other.done.isDone()) return;
+        }
+        if (reported) return;
+        reported = true;
+
+        long now = SystemClock.elapsedRealtime();
+        StringBuilder report = new StringBuilder("Critical startup done ")
+                .append(now - createdAt).append(" ms after onCreate, ")
+                .append(now - Process.getStartElapsedRealtime()).append(" ms after process start");
+        for (Step other : steps.values()) {
+            if (!other.deferred) {
+                report.append("\n  ").append(describe(other));
+            }
+        }
+        Log.i(TAG, report.toString());
+    }
+
+    private String describe(Step step) {
+        if (!succeeded(step)) {
+            return step.name + ": failed";
+        }
+        return step.name + ": queued " + (step.startedAt - step.scheduledAt) + " ms, ran "
+                + (step.finishedAt - step.startedAt) + " ms, done at +" + (step.finishedAt - createdAt) + " ms";
+    }
+
+    private Step requireStep(String name) {
+        Step step = steps.get(name);
+        if (step == null) {
+            throw new IllegalArgumentException("Unknown startup step " + name);
+        }
+        return step;
+    }
+
+    private static boolean succeeded(Step step) {
+        return succeeded(step.done);
+    }
+
+    private static boolean succeeded(ListenableFuture<?> future) {
+        if (!future.isDone() || future.isCancelled()) return false;
+        try {
+            Futures.getDone(future);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.chatbot2;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Separate work lanes so a slow history load can never hold up reply delivery.
+ * Each lane has its own threads and priority. Work belonging to the open session is tracked and
+ * cancelled in one go when the user switches sessions or starts a new chat.
+ */
+public class WorkScheduler {
+
+    private static final String TAG = "WorkScheduler";
+
+    public enum Lane {
+        NETWORK,  // Gemini callbacks and stream handling
+        DB_READ,  // Session and page loads the user is waiting on
+        DB_WRITE, // Write-behind flushes and cache upkeep
+        DECODE,   // Bitmap decoding and encoding
+        RENDER,   // Markdown parsing and text measurement for rows about to be shown
+        BULK      // Export and import of the whole history, which may run for minutes
+    }
+
+    private final ListeningExecutorService network;
+    private final ListeningExecutorService dbRead;
+    private final ScheduledExecutorService dbWriteScheduler;
+    private final ListeningExecutorService dbWrite;
+    private final ListeningExecutorService decode;
+    private final ListeningExecutorService render;
+    private final ListeningExecutorService bulk;
+    private final ScheduledExecutorService timer;
+
+    private final Set<Future<?>> sessionWork = ConcurrentHashMap.newKeySet();
+
+    private static volatile WorkScheduler INSTANCE;
+
+    // Process-wide, like the database: lanes outlive any single activity
+    public static WorkScheduler get() {
+        if (INSTANCE == null) {
+            synchronized (WorkScheduler.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new WorkScheduler();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private WorkScheduler() {
+        network = MoreExecutors.listeningDecorator(newPool("network", 2, Process.THREAD_PRIORITY_DEFAULT));
+        dbRead = MoreExecutors.listeningDecorator(newPool("db-read", 1, Process.THREAD_PRIORITY_DEFAULT));
+        dbWriteScheduler = Executors.newSingleThreadScheduledExecutor(
+                newThreadFactory("db-write", Process.THREAD_PRIORITY_BACKGROUND));
+        dbWrite = MoreExecutors.listeningDecorator(dbWriteScheduler);
+        decode = MoreExecutors.listeningDecorator(newPool("decode", 2,
+                Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_MORE_FAVORABLE));
+        render = MoreExecutors.listeningDecorator(newPool("render", 1, Process.THREAD_PRIORITY_DEFAULT));
+        bulk = MoreExecutors.listeningDecorator(newPool("bulk", 1, Process.THREAD_PRIORITY_BACKGROUND));
+        timer = Executors.newSingleThreadScheduledExecutor(newThreadFactory("timer", Process.THREAD_PRIORITY_DEFAULT));
+    }
+
+    public Executor executor(Lane lane) {
+        return service(lane);
+    }
+
+    // The write lane doubles as the scheduler for delayed write-behind flushes
+    public ScheduledExecutorService writeScheduler() {
+        return dbWriteScheduler;
+    }
+
+    // Deadlines, backoff and hedge delays; tasks run here must only hand work on, never block
+    public ScheduledExecutorService timer() {
+        return timer;
+    }
+
+    public <T> ListenableFuture<T> submit(Lane lane, Callable<T> task) {
+        return service(lane).submit(task);
+    }
+
+    // Like submit, but cancelled by cancelSessionWork()
+    public ListenableFuture<?> submitForSession(Lane lane, Runnable task) {
+        ListenableFuture<?> future = service(lane).submit(task);
+        trackForSession(future);
+        return future;
+    }
+
+    // Ties work started elsewhere (e.g. a Gemini request) to the open session
+    public void trackForSession(ListenableFuture<?> future) {
+        sessionWork.add(future);
+        future.addListener(() -> sessionWork.remove(future), MoreExecutors.directExecutor());
+    }
+
+    public void cancelSessionWork() {
+        int cancelled = 0;
+        for (Future<?> future : sessionWork) {
+            if (future.cancel(true)) {
+                cancelled++;
+            }
+        }
+        sessionWork.clear();
+        if (cancelled > 0) {
+            Log.d(TAG, "Cancelled " + cancelled + " tasks of the previous session");
+        }
+    }
+
+    private ListeningExecutorService service(Lane lane) {
+        switch (lane) {
+            case NETWORK:
+                return network;
+            case DB_READ:
+                return dbRead;
+            case DB_WRITE:
+                return dbWrite;
+            case RENDER:
+                return render;
+            case BULK:
+                return bulk;
+            case DECODE:
+            default:
+                return decode;
+        }
+    }
+
+    private static ThreadPoolExecutor newPool(String name, int threads, int priority) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), newThreadFactory(name, priority));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ThreadFactory newThreadFactory(String name, int priority) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> new Thread(() -> {
+            Process.setThreadPriority(priority);
+            runnable.run();
+        }, name + "-" + count.incrementAndGet());
+    }
+}
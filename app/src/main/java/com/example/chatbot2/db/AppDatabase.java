@@ -2,25 +2,55 @@ package com.example.chatbot2.db;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
-@Database(entities = {ChatSession.class, ChatMessageEntity.class}, version = 1)
+@Database(entities = {ChatSession.class, ChatMessageEntity.class, ChatMessageFts.class, CachedResponse.class,
+        ImportCheckpoint.class},
+        version = 10)
 @TypeConverters({Converters.class})
 public abstract class AppDatabase extends RoomDatabase {
 
     public abstract ChatDao chatDao();
 
+    public abstract ResponseCacheDao responseCacheDao();
+
+    public static final String NAME = "chatbot_database";
+
     private static volatile AppDatabase INSTANCE;
 
+    // With WAL, NORMAL sync only fsyncs at checkpoints and stays safe against app crashes
+    private static final Callback WAL_TUNING = new Callback() {
+        @Override
+        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("PRAGMA synchronous = NORMAL");
+            db.query("PRAGMA journal_size_limit = 4194304").close(); // Truncate the WAL back to 4 MB after checkpoints
+        }
+    };
+
+    // Upgrades get these from the migration; Room only creates its own tables and triggers
+    private static final Callback CUSTOM_TRIGGERS = new Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            SessionPreviewTriggers.create(db);
+            SessionTokenTriggers.create(db);
+        }
+    };
+
     public static AppDatabase getDatabase(final Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
-                                    AppDatabase.class, "chatbot_database")
+                                    AppDatabase.class, NAME)
+                            .addMigrations(Migrations.all(context))
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                            .addCallback(WAL_TUNING)
+                            .addCallback(CUSTOM_TRIGGERS)
                             .build();
                 }
             }
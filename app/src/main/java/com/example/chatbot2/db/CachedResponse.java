@@ -0,0 +1,26 @@
+package com.example.chatbot2.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+@Entity(tableName = "response_cache")
+public class CachedResponse {
+
+    @PrimaryKey
+    @NonNull
+    public String cacheKey; // Hash of prompt, history fingerprint, model and config
+
+    public String response;
+    public long createdAt;
+    public long lastAccessedAt;
+    public int sizeBytes;
+
+    public CachedResponse(@NonNull String cacheKey, String response, long createdAt, long lastAccessedAt, int sizeBytes) {
+        this.cacheKey = cacheKey;
+        this.response = response;
+        this.createdAt = createdAt;
+        this.lastAccessedAt = lastAccessedAt;
+        this.sizeBytes = sizeBytes;
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.chatbot2.db;
 
+import android.database.Cursor;
+
+import androidx.paging.PagingSource;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
@@ -7,10 +10,17 @@ import androidx.room.Query;
 import androidx.room.Transaction;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 @Dao
 public interface ChatDao {
 
+    // Runs a group of writes as a single SQLite transaction (one commit, one fsync)
+    @Transaction
+    default void runInTransaction(Consumer<ChatDao> writes) {
+        writes.accept(this);
+    }
+
     // --- Chat Session Operations ---
 
     @Insert(onConflict = OnConflictStrategy.REPLACE)
@@ -22,15 +32,129 @@ public interface ChatDao {
     @Query("SELECT * FROM chat_sessions WHERE sessionId = :sessionId")
     ChatSession getSessionById(long sessionId);
 
+    // Paged and re-run by Room whenever chat_sessions changes, which the preview triggers ensure on every message
+    @Query("SELECT sessionId, title, lastMessagePreview, messageCount, updatedAt, totalTokens FROM chat_sessions "
+            + "ORDER BY updatedAt DESC, sessionId DESC")
+    PagingSource<Integer, SessionPreview> getSessionPreviews();
+
     @Query("UPDATE chat_sessions SET title = :title WHERE sessionId = :sessionId")
     void updateSessionTitle(long sessionId, String title);
 
+    @Query("UPDATE chat_sessions SET summary = :summary, summarizedUpToTimestamp = :timestamp, "
+            + "summarizedUpToMessageId = :messageId WHERE sessionId = :sessionId")
+    void updateSessionSummary(long sessionId, String summary, long timestamp, long messageId);
+
     // --- Chat Message Operations ---
 
     @Insert
-    void insertMessage(ChatMessageEntity message);
+    long insertMessage(ChatMessageEntity message); // Returns the new message ID
 
     @Query("SELECT * FROM chat_messages WHERE sessionId = :sessionId ORDER BY timestamp ASC")
     List<ChatMessageEntity> getMessagesForSession(long sessionId);
 
+    // --- Token Accounting ---
+
+    // Walks by messageId so each batch starts where the last one stopped instead of rescanning counted rows
+    @Query("SELECT * FROM chat_messages WHERE messageId > :afterMessageId AND textTokens < 0 "
+            + "ORDER BY messageId LIMIT :limit")
+    List<ChatMessageEntity> getUncountedMessages(long afterMessageId, int limit);
+
+    @Query("UPDATE chat_messages SET textTokens = :textTokens, imageTokens = :imageTokens WHERE messageId = :messageId")
+    void updateMessageTokens(long messageId, int textTokens, int imageTokens);
+
+    // Turns not yet folded into the session summary, after the same keyset the pages are ordered by
+    @Query("SELECT * FROM chat_messages WHERE sessionId = :sessionId "
+            + "AND (timestamp > :timestamp OR (timestamp = :timestamp AND messageId > :messageId)) "
+            + "ORDER BY timestamp ASC, messageId ASC")
+    List<ChatMessageEntity> getMessagesAfter(long sessionId, long timestamp, long messageId);
+
+    // --- Keyset Paging (newest first / oldest first) ---
+
+    @Query("SELECT * FROM chat_messages WHERE sessionId = :sessionId "
+            + "ORDER BY timestamp DESC, messageId DESC LIMIT :limit")
+    List<ChatMessageEntity> getLatestMessages(long sessionId, int limit);
+
+    @Query("SELECT * FROM chat_messages WHERE sessionId = :sessionId "
+            + "AND (timestamp < :timestamp OR (timestamp = :timestamp AND messageId < :messageId)) "
+            + "ORDER BY timestamp DESC, messageId DESC LIMIT :limit")
+    List<ChatMessageEntity> getMessagesBefore(long sessionId, long timestamp, long messageId, int limit);
+
+    @Query("SELECT * FROM chat_messages WHERE sessionId = :sessionId "
+            + "AND (timestamp > :timestamp OR (timestamp = :timestamp AND messageId > :messageId)) "
+            + "ORDER BY timestamp ASC, messageId ASC LIMIT :limit")
+    List<ChatMessageEntity> getMessagesAfter(long sessionId, long timestamp, long messageId, int limit);
+
+    @Query("SELECT * FROM chat_messages WHERE messageId = :messageId")
+    ChatMessageEntity getMessageById(long messageId);
+
+    // --- Export / Import ---
+
+    // Every session followed by its messages, read row by row so an export never holds a whole session;
+    // a session without messages comes back as a single row with a null messageId
+    @Query("SELECT s.sessionId, s.title, s.timestamp AS sessionTimestamp, m.messageId, m.sender, m.message, "
+            + "m.imageHash, m.imageWidth, m.imageHeight, m.timestamp FROM chat_sessions s "
+            + "LEFT JOIN chat_messages m ON m.sessionId = s.sessionId "
+            + "ORDER BY s.sessionId, m.timestamp, m.messageId")
+    Cursor exportCursor();
+
+    @Query("SELECT * FROM import_checkpoints WHERE exportId = :exportId")
+    ImportCheckpoint getImportCheckpoint(String exportId);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void saveImportCheckpoint(ImportCheckpoint checkpoint);
+
+    // --- Retention ---
+    // Deleting a session removes its messages through the CASCADE on chat_messages.
+    // Each delete is capped so no single transaction holds the write lock for long. Neither the most
+    // recently active session nor :openSessionId, the one open on screen, is ever deleted: messages
+    // still to be written for it would fail the foreign key.
+
+    @Query("DELETE FROM chat_sessions WHERE sessionId IN (SELECT sessionId FROM chat_sessions "
+            + "WHERE updatedAt < :cutoff AND sessionId != :openSessionId "
+            + "ORDER BY updatedAt ASC, sessionId ASC LIMIT :limit) "
+            + "AND sessionId != (SELECT sessionId FROM chat_sessions ORDER BY updatedAt DESC, sessionId DESC LIMIT 1)")
+    int deleteSessionsUpdatedBefore(long cutoff, int limit, long openSessionId);
+
+    // The oldest sessions beyond the newest :keep
+    @Query("DELETE FROM chat_sessions WHERE sessionId IN (SELECT sessionId FROM chat_sessions "
+            + "WHERE sessionId != :openSessionId "
+            + "ORDER BY updatedAt DESC, sessionId DESC LIMIT :limit OFFSET :keep)")
+    int deleteSessionsBeyond(int keep, int limit, long openSessionId);
+
+    @Query("DELETE FROM chat_sessions WHERE sessionId IN (SELECT sessionId FROM chat_sessions "
+            + "WHERE sessionId != :openSessionId ORDER BY updatedAt ASC, sessionId ASC LIMIT :limit) "
+            + "AND sessionId != (SELECT sessionId FROM chat_sessions ORDER BY updatedAt DESC, sessionId DESC LIMIT 1)")
+    int deleteOldestSessions(int limit, long openSessionId);
+
+    @Query("SELECT DISTINCT imageHash FROM chat_messages WHERE imageHash IS NOT NULL")
+    List<String> getReferencedImageHashes();
+
+    // Points every message at a re-encoded copy of an attachment, in one statement
+    @Query("UPDATE chat_messages SET imageHash = :newHash, imageWidth = :width, imageHeight = :height "
+            + "WHERE imageHash = :oldHash")
+    int replaceImage(String oldHash, String newHash, int width, int height);
+
+    // Attachments whose latest use is older than the cutoff
+    @Query("SELECT imageHash FROM chat_messages WHERE imageHash IS NOT NULL "
+            + "GROUP BY imageHash HAVING MAX(timestamp) < :cutoff")
+    List<String> getImageHashesUnusedSince(long cutoff);
+
+    // --- Full-Text Search ---
+
+    // Only the newest :candidates matches are ranked, so a common term costs no more than a rare one.
+    // Ranked by how often the terms occur (offsets() lists four numbers per hit), newest first on ties,
+    // and paged by keyset: the next page starts after the last (hits, messageId) shown
+    @Query("SELECT r.messageId, m.sessionId, m.timestamp, s.title AS sessionTitle, r.snippet, r.hits FROM ("
+            + "SELECT docid AS messageId, "
+            + "snippet(chat_messages_fts, :matchStart, :matchEnd, '…', -1, 12) AS snippet, "
+            + "(length(offsets(chat_messages_fts)) - length(replace(offsets(chat_messages_fts), ' ', '')) + 1) / 4 AS hits "
+            + "FROM chat_messages_fts WHERE chat_messages_fts MATCH :matchQuery "
+            + "ORDER BY docid DESC LIMIT :candidates) r "
+            + "JOIN chat_messages m ON m.messageId = r.messageId "
+            + "JOIN chat_sessions s ON s.sessionId = m.sessionId "
+            + "WHERE r.hits < :afterHits OR (r.hits = :afterHits AND r.messageId < :afterMessageId) "
+            + "ORDER BY r.hits DESC, r.messageId DESC LIMIT :limit")
+    List<MessageSearchResult> searchMessages(String matchQuery, String matchStart, String matchEnd, int candidates,
+                                             int afterHits, long afterMessageId, int limit);
+
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+package com.example.chatbot2.db;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import com.example.chatbot2.core.MessageRecord;
+import com.example.chatbot2.core.NdjsonMessageCodec;
+import com.example.chatbot2.core.SessionRecord;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the whole chat history as NDJSON (see NdjsonMessageCodec), either on its own with
+ * attachments referenced by hash, or as a zip holding the NDJSON plus the attachment files.
+ * Rows come straight off a cursor and go out through a buffered writer, so memory use does not
+ * grow with the history; only the set of attachment hashes seen is kept.
+ */
+public final class ChatExporter {
+
+    private static final String TAG = "ChatExporter";
+
+    public static final int FORMAT_VERSION = 1;
+    // Zip layout, shared with ChatImporter
+    static final String MESSAGES_ENTRY = "messages.ndjson";
+    static final String ATTACHMENTS_DIR = "attachments/";
+
+    public static class Result {
+        public final int sessions;
+        public final int messages;
+        public final int attachments;
+
+        Result(int sessions, int messages, int attachments) {
+            this.sessions = sessions;
+            this.messages = messages;
+            this.attachments = attachments;
+        }
+    }
+
+    private ChatExporter() {
+    }
+
+    // Blocks until everything is written; call off the main thread. The stream is left open
+    public static Result export(ChatDao chatDao, ImageStore imageStore, OutputStream out, boolean withAttachments)
+            throws IOException {
+        Set<String> imageHashes = new LinkedHashSet<>();
+        if (!withAttachments) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            int[] counts = writeLines(chatDao, writer, imageHashes);
+            return new Result(counts[0], counts[1], 0);
+        }
+
+        ZipOutputStream zip = new ZipOutputStream(out);
+        zip.putNextEntry(new ZipEntry(MESSAGES_ENTRY));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 64 * 1024);
+        int[] counts = writeLines(chatDao, writer, imageHashes);
+        zip.closeEntry();
+
+        // Stored images are PNG or JPEG already; deflating them again only costs time
+        zip.setLevel(Deflater.NO_COMPRESSION);
+        int attachments = 0;
+        byte[] buffer = new byte[64 * 1024];
+        for (String hash : imageHashes) {
+            File file = imageStore.getImageFile(hash);
+            if (!file.exists()) {
+                Log.w(TAG, "Attachment " + hash + " is missing, exporting the reference only");
+                continue;
+            }
+            zip.putNextEntry(new ZipEntry(ATTACHMENTS_DIR + hash));
+            try (InputStream in = new FileInputStream(file)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    zip.write(buffer, 0, read);
+                }
+            }
+            zip.closeEntry();
+            attachments++;
+        }
+        zip.finish();
+        return new Result(counts[0], counts[1], attachments);
+    }
+
+    // Returns {sessions, messages}; collects the hashes of referenced attachments
+    private static int[] writeLines(ChatDao chatDao, Writer writer, Set<String> imageHashes) throws IOException {
+        NdjsonMessageCodec codec = new NdjsonMessageCodec();
+        writer.write(codec.headerToJson(UUID.randomUUID().toString(), FORMAT_VERSION, System.currentTimeMillis()));
+        writer.write('\n');
+
+        int sessions = 0;
+        int messages = 0;
+        try (Cursor cursor = chatDao.exportCursor()) {
+            int sessionIdColumn = cursor.getColumnIndexOrThrow("sessionId");
+            int titleColumn = cursor.getColumnIndexOrThrow("title");
+            int sessionTimestampColumn = cursor.getColumnIndexOrThrow("sessionTimestamp");
+            int messageIdColumn = cursor.getColumnIndexOrThrow("messageId");
+            int senderColumn = cursor.getColumnIndexOrThrow("sender");
+            int messageColumn = cursor.getColumnIndexOrThrow("message");
+            int imageHashColumn = cursor.getColumnIndexOrThrow("imageHash");
+            int imageWidthColumn = cursor.getColumnIndexOrThrow("imageWidth");
+            int imageHeightColumn = cursor.getColumnIndexOrThrow("imageHeight");
+            int timestampColumn = cursor.getColumnIndexOrThrow("timestamp");
+
+            long currentSessionId = -1;
+            while (cursor.moveToNext()) {
+                long sessionId = cursor.getLong(sessionIdColumn);
+                if (sessionId != currentSessionId) {
+                    currentSessionId = sessionId;
+                    writer.write(codec.sessionToJson(new SessionRecord(sessionId,
+                            cursor.getString(titleColumn), cursor.getLong(sessionTimestampColumn))));
+                    writer.write('\n');
+                    sessions++;
+                }
+                if (cursor.isNull(messageIdColumn)) continue; // Session without messages
+
+                String imageHash = cursor.getString(imageHashColumn);
+                if (imageHash != null) {
+                    imageHashes.add(imageHash);
+                }
+                writer.write(codec.toJson(new MessageRecord(sessionId, cursor.getLong(messageIdColumn),
+                        cursor.getString(senderColumn), cursor.getString(messageColumn), imageHash,
+                        cursor.getInt(imageWidthColumn), cursor.getInt(imageHeightColumn),
+                        cursor.getLong(timestampColumn))));
+                writer.write('\n');
+                messages++;
+            }
+        }
+        writer.flush();
+        Log.d(TAG, "Exported " + sessions + " sessions, " + messages + " messages");
+        return new int[]{sessions, messages};
+    }
+}
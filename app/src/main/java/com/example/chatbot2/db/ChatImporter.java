@@ -0,0 +1,170 @@
+package com.example.chatbot2.db;
+
+import android.util.Log;
+
+import com.example.chatbot2.core.MessageRecord;
+import com.example.chatbot2.core.NdjsonMessageCodec;
+import com.example.chatbot2.core.SessionRecord;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads what ChatExporter writes, plain NDJSON or zipped with attachments, into new sessions.
+ * Lines go in as batches of one large transaction each, and every batch also saves how far the
+ * import got, so an interrupted import of the same export picks up at the next batch instead of
+ * duplicating messages. Attachments are content-addressed and simply skipped if already stored.
+ */
+public final class ChatImporter {
+
+    private static final String TAG = "ChatImporter";
+    private static final int BATCH_LINES = 1000;
+    private static final String UNTITLED_SESSION = "Imported chat";
+
+    public static class Result {
+        public int sessions;
+        public int messages;
+        public int attachments;
+        public int skippedLines; // Lines that could not be parsed
+        public boolean alreadyImported;
+    }
+
+    private ChatImporter() {
+    }
+
+    // Blocks until everything is read; call off the main thread. The stream is left open
+    public static Result importFrom(ChatDao chatDao, ImageStore imageStore, InputStream in) throws IOException {
+        Result result = new Result();
+        BufferedInputStream buffered = new BufferedInputStream(in, 64 * 1024);
+        buffered.mark(2);
+        boolean zipped = buffered.read() == 'P' && buffered.read() == 'K'; // Zip local file header
+        buffered.reset();
+
+        if (!zipped) {
+            importLines(chatDao, newReader(buffered), result);
+        } else {
+            ZipInputStream zip = new ZipInputStream(buffered);
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (name.equals(ChatExporter.MESSAGES_ENTRY)) {
+                    importLines(chatDao, newReader(zip), result);
+                } else if (name.startsWith(ChatExporter.ATTACHMENTS_DIR)) {
+                    importAttachment(imageStore, zip, name.substring(ChatExporter.ATTACHMENTS_DIR.length()), result);
+                }
+                zip.closeEntry();
+            }
+        }
+        Log.d(TAG, "Imported " + result.sessions + " sessions, " + result.messages + " messages, "
+                + result.attachments + " attachments" + (result.skippedLines > 0 ? ", skipped " + result.skippedLines + " lines" : ""));
+        return result;
+    }
+
+    private static void importAttachment(ImageStore imageStore, InputStream in, String hash, Result result)
+            throws IOException {
+        if (imageStore.getImageFile(hash).exists()) return;
+        ImageStore.StoredImage stored = imageStore.put(in);
+        if (!stored.hash.equals(hash)) {
+            Log.w(TAG, "Attachment " + hash + " arrived with content hashing to " + stored.hash);
+        }
+        result.attachments++;
+    }
+
+    // --- Lines ---
+
+    private static void importLines(ChatDao chatDao, BufferedReader reader, Result result) throws IOException {
+        NdjsonMessageCodec codec = new NdjsonMessageCodec();
+        String line = reader.readLine();
+        if (line == null) return;
+        long lineNumber = 1;
+
+        // Files without a header (e.g. written by other tools) import fine but cannot be resumed
+        String exportId = NdjsonMessageCodec.TYPE_HEADER.equals(NdjsonMessageCodec.typeOf(line))
+                ? NdjsonMessageCodec.readStringField(line, "exportId") : null;
+        ImportCheckpoint checkpoint = exportId != null ? chatDao.getImportCheckpoint(exportId) : null;
+        if (checkpoint != null && checkpoint.finished) {
+            result.alreadyImported = true;
+            return;
+        }
+        if (checkpoint != null) {
+            Log.d(TAG, "Resuming " + exportId + " after line " + checkpoint.linesDone);
+        } else {
+            checkpoint = new ImportCheckpoint(exportId != null ? exportId : "", 1, 0, 0, false);
+        }
+        boolean resumable = exportId != null;
+
+        List<Object> batch = new ArrayList<>(BATCH_LINES);
+        if (!resumable) {
+            parseLine(codec, line, batch, result);
+        }
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (lineNumber <= checkpoint.linesDone || line.isEmpty()) continue;
+            parseLine(codec, line, batch, result);
+            if (batch.size() >= BATCH_LINES) {
+                insertBatch(chatDao, batch, checkpoint, lineNumber, false, resumable, result);
+                batch.clear();
+            }
+        }
+        insertBatch(chatDao, batch, checkpoint, lineNumber, true, resumable, result);
+    }
+
+    private static void parseLine(NdjsonMessageCodec codec, String line, List<Object> batch, Result result) {
+        try {
+            String type = NdjsonMessageCodec.typeOf(line);
+            if (NdjsonMessageCodec.TYPE_SESSION.equals(type)) {
+                batch.add(codec.sessionFromJson(line));
+            } else if (NdjsonMessageCodec.TYPE_MESSAGE.equals(type)) {
+                batch.add(codec.fromJson(line));
+            }
+        } catch (IOException e) {
+            result.skippedLines++;
+            Log.w(TAG, "Skipping unreadable line: " + e.getMessage());
+        }
+    }
+
+    // One transaction for the rows and the checkpoint, so they can never disagree after a crash
+    private static void insertBatch(ChatDao chatDao, List<Object> batch, ImportCheckpoint checkpoint,
+                                    long linesDone, boolean finished, boolean resumable, Result result) {
+        chatDao.runInTransaction(dao -> {
+            for (Object record : batch) {
+                if (record instanceof SessionRecord) {
+                    SessionRecord session = (SessionRecord) record;
+                    startSession(dao, checkpoint, session.sessionId, session.title, session.timestamp, result);
+                    continue;
+                }
+                MessageRecord message = (MessageRecord) record;
+                if (checkpoint.sessionId == 0 || message.sessionId != checkpoint.sourceSessionId) {
+                    startSession(dao, checkpoint, message.sessionId, null, message.timestamp, result);
+                }
+                dao.insertMessage(new ChatMessageEntity(checkpoint.sessionId, message.message, message.imageHash,
+                        message.imageWidth, message.imageHeight, message.sender, message.timestamp));
+                result.messages++;
+            }
+            checkpoint.linesDone = linesDone;
+            checkpoint.finished = finished;
+            if (resumable) {
+                dao.saveImportCheckpoint(checkpoint);
+            }
+        });
+    }
+
+    private static void startSession(ChatDao dao, ImportCheckpoint checkpoint, long sourceSessionId,
+                                     String title, long timestamp, Result result) {
+        checkpoint.sourceSessionId = sourceSessionId;
+        checkpoint.sessionId = dao.insertSession(new ChatSession(title != null ? title : UNTITLED_SESSION, timestamp));
+        result.sessions++;
+    }
+
+    private static BufferedReader newReader(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+    }
+}
@@ -1,14 +1,20 @@
 package com.example.chatbot2.db;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
+import com.example.chatbot2.core.TokenEstimator;
+
 @Entity(tableName = "chat_messages",
         foreignKeys = @ForeignKey(entity = ChatSession.class,
                 parentColumns = "sessionId",
                 childColumns = "sessionId",
-                onDelete = ForeignKey.CASCADE))
+                onDelete = ForeignKey.CASCADE),
+        // Keyset paging walks (sessionId, timestamp, messageId) in both directions
+        indices = @Index(value = {"sessionId", "timestamp", "messageId"}))
 public class ChatMessageEntity {
 
     @PrimaryKey(autoGenerate = true)
@@ -17,16 +23,30 @@ public class ChatMessageEntity {
     public long sessionId; // Foreign key to link to ChatSession
 
     public String message;
-    public byte[] image; // Store bitmap as byte array
+    public String imageHash; // Key into ImageStore, null for text-only messages
+    public int imageWidth;
+    public int imageHeight;
     public String sender; // Store enum as String ("USER" or "BOT")
     public long timestamp;
 
+    // Estimated cost of each part when replayed to the model; NOT_COUNTED until TokenBackfill reaches older rows
+    public static final int NOT_COUNTED = -1;
+    @ColumnInfo(defaultValue = "-1")
+    public int textTokens;
+    @ColumnInfo(defaultValue = "-1")
+    public int imageTokens;
+
     // Constructor
-    public ChatMessageEntity(long sessionId, String message, byte[] image, String sender, long timestamp) {
+    public ChatMessageEntity(long sessionId, String message, String imageHash, int imageWidth, int imageHeight,
+                             String sender, long timestamp) {
         this.sessionId = sessionId;
         this.message = message;
-        this.image = image;
+        this.imageHash = imageHash;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
         this.sender = sender;
         this.timestamp = timestamp;
+        this.textTokens = TokenEstimator.estimate(message);
+        this.imageTokens = imageHash != null ? TokenEstimator.IMAGE_TOKENS : 0;
     }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.example.chatbot2.db;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+// External-content index over chat_messages.message; Room's triggers keep it in sync with the table
+@Fts4(contentEntity = ChatMessageEntity.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "chat_messages_fts")
+public class ChatMessageFts {
+
+    public String message;
+}
@@ -1,9 +1,12 @@
 package com.example.chatbot2.db;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "chat_sessions")
+// The drawer lists sessions by their latest activity
+@Entity(tableName = "chat_sessions", indices = @Index("updatedAt"))
 public class ChatSession {
 
     @PrimaryKey(autoGenerate = true)
@@ -12,8 +15,28 @@ public class ChatSession {
     public String title;
     public long timestamp;
 
+    // Rolling summary of the turns that no longer fit the context window
+    public String summary;
+    // Last folded turn, as a (timestamp, messageId) keyset like the one MessagePager pages by
+    @ColumnInfo(defaultValue = "0")
+    public long summarizedUpToTimestamp;
+    @ColumnInfo(defaultValue = "0")
+    public long summarizedUpToMessageId;
+
+    // Denormalized for the drawer; kept up to date by the triggers in SessionPreviewTriggers
+    public String lastMessagePreview;
+    @ColumnInfo(defaultValue = "0")
+    public int messageCount;
+    @ColumnInfo(defaultValue = "0")
+    public long updatedAt;
+
+    // Sum of the token counts of the session's messages, kept by SessionTokenTriggers
+    @ColumnInfo(defaultValue = "0")
+    public long totalTokens;
+
     public ChatSession(String title, long timestamp) {
         this.title = title;
         this.timestamp = timestamp;
+        this.updatedAt = timestamp;
     }
 }
\ No newline at end of file
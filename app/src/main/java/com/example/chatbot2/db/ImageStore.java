@@ -0,0 +1,294 @@
+package com.example.chatbot2.db;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.util.Log;
+
+import com.example.chatbot2.Metrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+
+/**
+ * Content-addressed store for chat attachments in app-private files.
+ * Each image is written once under its SHA-256 hash, next to a small JPEG thumbnail,
+ * so the database only keeps the hash and the dimensions.
+ * Maintenance may later re-encode an old attachment; the copy is stored under its own hash, so a
+ * new upload of the original never dedupes onto the smaller copy.
+ */
+public class ImageStore {
+
+    private static final String TAG = "ImageStore";
+    private static final int THUMBNAIL_MAX_SIZE = 256;
+    private static final int THUMBNAIL_QUALITY = 80;
+
+    private static volatile ImageStore INSTANCE;
+
+    private final File imageDir;
+    private final File thumbnailDir;
+
+    // Result of a write: the hash the image is stored under and its pixel size
+    public static class StoredImage {
+        public final String hash;
+        public final int width;
+        public final int height;
+
+        StoredImage(String hash, int width, int height) {
+            this.hash = hash;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    public static ImageStore get(final Context context) {
+        if (INSTANCE == null) {
+            synchronized (ImageStore.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new ImageStore(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private ImageStore(Context context) {
+        imageDir = new File(context.getFilesDir(), "attachments");
+        thumbnailDir = new File(imageDir, "thumbs");
+        thumbnailDir.mkdirs();
+    }
+
+    // --- Writing ---
+
+    public StoredImage put(Bitmap bitmap) throws IOException {
+        long start = Metrics.start();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, stream);
+        Metrics.get().recordSince(Metrics.IMAGE_ENCODE, start);
+        return put(new ByteArrayInputStream(stream.toByteArray()));
+    }
+
+    // Streams the encoded image to a temp file while hashing it, then moves it into place
+    public StoredImage put(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        File tempFile = File.createTempFile("incoming", ".tmp", imageDir);
+        try {
+            try (OutputStream out = new FileOutputStream(tempFile)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            String hash = toHex(digest.digest());
+            File imageFile = getImageFile(hash);
+            synchronized (this) {
+                if (!imageFile.exists() && !tempFile.renameTo(imageFile)) {
+                    throw new IOException("Could not move attachment into place: " + hash);
+                }
+            }
+
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(imageFile.getPath(), bounds);
+
+            if (!getThumbnailFile(hash).exists()) {
+                writeThumbnail(imageFile, getThumbnailFile(hash), bounds.outWidth, bounds.outHeight);
+            }
+            return new StoredImage(hash, Math.max(0, bounds.outWidth), Math.max(0, bounds.outHeight));
+        } finally {
+            // Already gone if it was renamed; otherwise it was a duplicate or a failed write
+            tempFile.delete();
+        }
+    }
+
+    private void writeThumbnail(File source, File target, int width, int height) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = 1;
+        while (Math.max(width, height) / (options.inSampleSize * 2) >= THUMBNAIL_MAX_SIZE) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap decoded = BitmapFactory.decodeFile(source.getPath(), options);
+        if (decoded == null) {
+            Log.w(TAG, "Could not decode " + source.getName() + " for its thumbnail");
+            return;
+        }
+
+        float scale = Math.min(1f, (float) THUMBNAIL_MAX_SIZE / Math.max(decoded.getWidth(), decoded.getHeight()));
+        Bitmap thumbnail = Bitmap.createScaledBitmap(decoded,
+                Math.max(1, Math.round(decoded.getWidth() * scale)),
+                Math.max(1, Math.round(decoded.getHeight() * scale)),
+                true);
+
+        File tempFile = new File(target.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            thumbnail.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, out);
+        }
+        if (!tempFile.renameTo(target)) {
+            tempFile.delete();
+        }
+        if (thumbnail != decoded) {
+            thumbnail.recycle();
+        }
+        decoded.recycle();
+    }
+
+    // --- Reading ---
+
+    public File getImageFile(String hash) {
+        return new File(imageDir, hash);
+    }
+
+    public File getThumbnailFile(String hash) {
+        return new File(thumbnailDir, hash + ".jpg");
+    }
+
+    public Bitmap loadImage(String hash) {
+        if (hash == null) {
+            return null;
+        }
+        long start = Metrics.start();
+        Bitmap image = BitmapFactory.decodeFile(getImageFile(hash).getPath());
+        Metrics.get().recordSince(Metrics.IMAGE_DECODE, start);
+        return image;
+    }
+
+    public Bitmap loadThumbnail(String hash) {
+        if (hash == null) {
+            return null;
+        }
+        File thumbnail = getThumbnailFile(hash);
+        if (!thumbnail.exists()) {
+            return loadImage(hash);
+        }
+        return BitmapFactory.decodeFile(thumbnail.getPath());
+    }
+
+    // --- Maintenance ---
+
+    // Attachments plus thumbnails, in bytes
+    public long getStoredBytes() {
+        return directoryBytes(imageDir) + directoryBytes(thumbnailDir);
+    }
+
+    // Stores a copy re-encoded as lossy WebP, at most about maxSize pixels on its long side.
+    // The original stays until the caller has pointed its messages at the copy and deleteUnreferenced
+    // removes it. Returns null if it is WebP already or the new encoding would not be smaller
+    public StoredImage recompress(String hash, int maxSize, int quality) throws IOException {
+        File imageFile = getImageFile(hash);
+        if (!imageFile.exists() || isWebP(imageFile)) {
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(imageFile.getPath(), options);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        while (Math.max(options.outWidth, options.outHeight) / (options.inSampleSize * 2) >= maxSize) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap decoded = BitmapFactory.decodeFile(imageFile.getPath(), options);
+        if (decoded == null) {
+            Log.w(TAG, "Could not decode " + hash + " for recompression");
+            return null;
+        }
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try {
+            decoded.compress(webPFormat(), quality, encoded);
+        } finally {
+            decoded.recycle();
+        }
+        if (encoded.size() >= imageFile.length()) {
+            return null;
+        }
+        return put(new ByteArrayInputStream(encoded.toByteArray()));
+    }
+
+    // Deletes attachments no message refers to any more, along with their thumbnails and stale temp files.
+    // Files newer than minAgeMillis are kept: a picked image is stored before its message is written
+    public long deleteUnreferenced(Set<String> referencedHashes, long minAgeMillis) {
+        File[] files = imageDir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long cutoff = System.currentTimeMillis() - minAgeMillis;
+        long freed = 0;
+        for (File file : files) {
+            if (!file.isFile() || file.lastModified() >= cutoff || referencedHashes.contains(file.getName())) {
+                continue;
+            }
+            File thumbnail = getThumbnailFile(file.getName());
+            long length = file.length() + thumbnail.length();
+            if (file.delete()) {
+                thumbnail.delete();
+                freed += length;
+            }
+        }
+        return freed;
+    }
+
+    private static boolean isWebP(File file) throws IOException {
+        byte[] header = new byte[12];
+        try (InputStream in = new FileInputStream(file)) {
+            if (in.read(header) < header.length) {
+                return false;
+            }
+        }
+        // RIFF container with a WEBP form type
+        return header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P';
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webPFormat() {
+        // Plain WEBP is lossy below quality 100 on every version, but deprecated from API 30
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+    }
+
+    private static long directoryBytes(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (File file : files) {
+            if (file.isFile()) {
+                bytes += file.length();
+            }
+        }
+        return bytes;
+    }
+
+    // --- Helpers ---
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
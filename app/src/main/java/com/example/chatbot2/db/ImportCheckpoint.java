@@ -0,0 +1,28 @@
+package com.example.chatbot2.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// How far ChatImporter got with one export; written in the same transaction as each batch it inserts
+@Entity(tableName = "import_checkpoints")
+public class ImportCheckpoint {
+
+    @PrimaryKey
+    @NonNull
+    public String exportId; // From the export's header line
+
+    public long linesDone;
+    // Exports list each session's messages together, so only the session being filled needs remembering
+    public long sourceSessionId;
+    public long sessionId;
+    public boolean finished;
+
+    public ImportCheckpoint(@NonNull String exportId, long linesDone, long sourceSessionId, long sessionId, boolean finished) {
+        this.exportId = exportId;
+        this.linesDone = linesDone;
+        this.sourceSessionId = sourceSessionId;
+        this.sessionId = sessionId;
+        this.finished = finished;
+    }
+}
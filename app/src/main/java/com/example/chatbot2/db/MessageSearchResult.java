@@ -0,0 +1,16 @@
+package com.example.chatbot2.db;
+
+// One search hit: the message, its session and a snippet with the matched terms marked
+public class MessageSearchResult {
+
+    // Wrapped around matched terms in the snippet
+    public static final String MATCH_START = "\u0002";
+    public static final String MATCH_END = "\u0003";
+
+    public long messageId;
+    public long sessionId;
+    public long timestamp;
+    public String sessionTitle;
+    public String snippet;
+    public int hits;
+}
@@ -0,0 +1,246 @@
+package com.example.chatbot2.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class Migrations {
+
+    private static final String TAG = "Migrations";
+
+    private Migrations() {
+    }
+
+    public static Migration[] all(Context context) {
+        return new Migration[]{
+                migration1To2(context),
+                MIGRATION_2_3,
+                MIGRATION_3_4,
+                MIGRATION_4_5,
+                MIGRATION_5_6,
+                MIGRATION_6_7,
+                MIGRATION_7_8,
+                MIGRATION_8_9,
+                MIGRATION_9_10
+        };
+    }
+
+    // --- 1 -> 2: move image BLOBs out of chat_messages into ImageStore ---
+
+    static Migration migration1To2(Context context) {
+        final ImageStore imageStore = ImageStore.get(context);
+        return new Migration(1, 2) {
+            @Override
+            public void migrate(@NonNull SupportSQLiteDatabase db) {
+                db.execSQL("CREATE TABLE IF NOT EXISTS `chat_messages_new` ("
+                        + "`messageId` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                        + "`sessionId` INTEGER NOT NULL, "
+                        + "`message` TEXT, "
+                        + "`imageHash` TEXT, "
+                        + "`imageWidth` INTEGER NOT NULL, "
+                        + "`imageHeight` INTEGER NOT NULL, "
+                        + "`sender` TEXT, "
+                        + "`timestamp` INTEGER NOT NULL, "
+                        + "FOREIGN KEY(`sessionId`) REFERENCES `chat_sessions`(`sessionId`) "
+                        + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+                db.execSQL("INSERT INTO `chat_messages_new` "
+                        + "(messageId, sessionId, message, imageHash, imageWidth, imageHeight, sender, timestamp) "
+                        + "SELECT messageId, sessionId, message, NULL, 0, 0, sender, timestamp FROM `chat_messages`");
+
+                // Only ids are collected up front; each BLOB is streamed out in chunks below
+                List<Long> imageMessageIds = new ArrayList<>();
+                try (Cursor cursor = db.query("SELECT messageId FROM `chat_messages` WHERE image IS NOT NULL")) {
+                    while (cursor.moveToNext()) {
+                        imageMessageIds.add(cursor.getLong(0));
+                    }
+                }
+
+                for (long messageId : imageMessageIds) {
+                    try (InputStream blob = new BlobChunkInputStream(db, messageId)) {
+                        ImageStore.StoredImage stored = imageStore.put(blob);
+                        db.execSQL("UPDATE `chat_messages_new` SET imageHash = ?, imageWidth = ?, imageHeight = ? "
+                                        + "WHERE messageId = ?",
+                                new Object[]{stored.hash, stored.width, stored.height, messageId});
+                    } catch (IOException e) {
+                        // The text of the message survives; only the attachment is lost
+                        Log.e(TAG, "Could not move image of message " + messageId + " out of the database", e);
+                    }
+                }
+
+                db.execSQL("DROP TABLE `chat_messages`");
+                db.execSQL("ALTER TABLE `chat_messages_new` RENAME TO `chat_messages`");
+                Log.d(TAG, "Moved " + imageMessageIds.size() + " images into the file store");
+            }
+        };
+    }
+
+    // --- 2 -> 3: composite index for keyset paging ---
+
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_chat_messages_sessionId_timestamp_messageId` "
+                    + "ON `chat_messages` (`sessionId`, `timestamp`, `messageId`)");
+        }
+    };
+
+    // --- 3 -> 4: rolling summary for the context window ---
+
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `chat_sessions` ADD COLUMN `summary` TEXT");
+            db.execSQL("ALTER TABLE `chat_sessions` ADD COLUMN `summarizedUpToMessageId` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    // --- 4 -> 5: persistent tier of the response cache ---
+
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `response_cache` ("
+                    + "`cacheKey` TEXT NOT NULL, "
+                    + "`response` TEXT, "
+                    + "`createdAt` INTEGER NOT NULL, "
+                    + "`lastAccessedAt` INTEGER NOT NULL, "
+                    + "`sizeBytes` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`cacheKey`))");
+        }
+    };
+
+    // --- 5 -> 6: full-text index over message text ---
+
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `chat_messages_fts` "
+                    + "USING FTS4(`message` TEXT, tokenize=unicode61, content=`chat_messages`)");
+            // The same sync triggers Room creates for a fresh install
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_chat_messages_fts_BEFORE_UPDATE "
+                    + "BEFORE UPDATE ON `chat_messages` BEGIN DELETE FROM `chat_messages_fts` "
+                    + "WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_chat_messages_fts_BEFORE_DELETE "
+                    + "BEFORE DELETE ON `chat_messages` BEGIN DELETE FROM `chat_messages_fts` "
+                    + "WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_chat_messages_fts_AFTER_UPDATE "
+                    + "AFTER UPDATE ON `chat_messages` BEGIN INSERT INTO `chat_messages_fts`(`docid`, `message`) "
+                    + "VALUES (NEW.`rowid`, NEW.`message`); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_chat_messages_fts_AFTER_INSERT "
+                    + "AFTER INSERT ON `chat_messages` BEGIN INSERT INTO `chat_messages_fts`(`docid`, `message`) "
+                    + "VALUES (NEW.`rowid`, NEW.`message`); END");
+            // Index the existing history in one pass
+            db.execSQL("INSERT INTO `chat_messages_fts`(`chat_messages_fts`) VALUES('rebuild')");
+        }
+    };
+
+    // --- 6 -> 7: denormalized session previews for the drawer ---
+
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `chat_sessions` ADD COLUMN `lastMessagePreview` TEXT");
+            db.execSQL("ALTER TABLE `chat_sessions` ADD COLUMN `messageCount` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `chat_sessions` ADD COLUMN `updatedAt` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_chat_sessions_updatedAt` ON `chat_sessions` (`updatedAt`)");
+            SessionPreviewTriggers.backfill(db);
+            SessionPreviewTriggers.create(db);
+        }
+    };
+
+    // --- 7 -> 8: per-message token counts and per-session totals ---
+
+    // Existing rows start out NOT_COUNTED; TokenBackfill counts them after startup and the triggers add them up
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `chat_messages` ADD COLUMN `textTokens` INTEGER NOT NULL DEFAULT -1");
+            db.execSQL("ALTER TABLE `chat_messages` ADD COLUMN `imageTokens` INTEGER NOT NULL DEFAULT -1");
+            db.execSQL("ALTER TABLE `chat_sessions` ADD COLUMN `totalTokens` INTEGER NOT NULL DEFAULT 0");
+            SessionTokenTriggers.create(db);
+        }
+    };
+
+    // --- 8 -> 9: import checkpoints ---
+
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `import_checkpoints` ("
+                    + "`exportId` TEXT NOT NULL, `linesDone` INTEGER NOT NULL, `sourceSessionId` INTEGER NOT NULL, "
+                    + "`sessionId` INTEGER NOT NULL, `finished` INTEGER NOT NULL, PRIMARY KEY(`exportId`))");
+        }
+    };
+
+    // --- 9 -> 10: summary boundary keyed on (timestamp, messageId) ---
+
+    // The timestamp of the last folded turn is still on its row
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `chat_sessions` ADD COLUMN `summarizedUpToTimestamp` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE `chat_sessions` SET `summarizedUpToTimestamp` = COALESCE((SELECT `timestamp` "
+                    + "FROM `chat_messages` WHERE `messageId` = `summarizedUpToMessageId`), 0) "
+                    + "WHERE `summarizedUpToMessageId` != 0");
+        }
+    };
+
+    // Reads a BLOB with substr() in slices so no single row has to fit in a CursorWindow
+    private static class BlobChunkInputStream extends InputStream {
+        private static final int CHUNK_SIZE = 512 * 1024;
+
+        private final SupportSQLiteDatabase db;
+        private final long messageId;
+        private byte[] chunk = new byte[0];
+        private int chunkPosition;
+        private long nextOffset = 1; // substr() is 1-based
+        private boolean exhausted;
+
+        BlobChunkInputStream(SupportSQLiteDatabase db, long messageId) {
+            this.db = db;
+            this.messageId = messageId;
+        }
+
+        @Override
+        public int read() {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : (single[0] & 0xFF);
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int length) {
+            if (chunkPosition == chunk.length && !fillChunk()) {
+                return -1;
+            }
+            int count = Math.min(length, chunk.length - chunkPosition);
+            System.arraycopy(chunk, chunkPosition, buffer, offset, count);
+            chunkPosition += count;
+            return count;
+        }
+
+        private boolean fillChunk() {
+            if (exhausted) {
+                return false;
+            }
+            try (Cursor cursor = db.query("SELECT substr(image, ?, ?) FROM `chat_messages` WHERE messageId = ?",
+                    new Object[]{nextOffset, CHUNK_SIZE, messageId})) {
+                chunk = (cursor.moveToFirst() && !cursor.isNull(0)) ? cursor.getBlob(0) : new byte[0];
+            }
+            chunkPosition = 0;
+            nextOffset += chunk.length;
+            if (chunk.length < CHUNK_SIZE) {
+                exhausted = true;
+            }
+            return chunk.length > 0;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.chatbot2.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+@Dao
+public interface ResponseCacheDao {
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void put(CachedResponse response);
+
+    @Query("SELECT * FROM response_cache WHERE cacheKey = :cacheKey")
+    CachedResponse get(String cacheKey);
+
+    @Query("UPDATE response_cache SET lastAccessedAt = :accessedAt WHERE cacheKey = :cacheKey")
+    void touch(String cacheKey, long accessedAt);
+
+    // --- Eviction ---
+
+    @Query("DELETE FROM response_cache WHERE createdAt < :cutoff")
+    int deleteCreatedBefore(long cutoff);
+
+    @Query("SELECT COALESCE(SUM(sizeBytes), 0) FROM response_cache")
+    long getTotalSize();
+
+    @Query("DELETE FROM response_cache WHERE cacheKey IN "
+            + "(SELECT cacheKey FROM response_cache ORDER BY lastAccessedAt ASC LIMIT :count)")
+    int deleteLeastRecentlyUsed(int count);
+
+    @Query("DELETE FROM response_cache")
+    void clear();
+}
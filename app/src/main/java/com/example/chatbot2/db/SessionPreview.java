@@ -0,0 +1,22 @@
+package com.example.chatbot2.db;
+
+import java.util.Objects;
+
+// One drawer row, read straight from the denormalized columns of chat_sessions
+public class SessionPreview {
+
+    public long sessionId;
+    public String title;
+    public String lastMessagePreview;
+    public int messageCount;
+    public long updatedAt;
+    public long totalTokens;
+
+    public boolean sameContentAs(SessionPreview other) {
+        return messageCount == other.messageCount
+                && updatedAt == other.updatedAt
+                && totalTokens == other.totalTokens
+                && Objects.equals(title, other.title)
+                && Objects.equals(lastMessagePreview, other.lastMessagePreview);
+    }
+}
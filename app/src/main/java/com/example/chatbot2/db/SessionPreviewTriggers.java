@@ -0,0 +1,49 @@
+package com.example.chatbot2.db;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Triggers that keep each session's drawer preview (last message, message count, last activity)
+ * in step with chat_messages, so listing sessions never touches the messages table.
+ * Room does not manage custom triggers, so they are created both on a fresh install and in the migration.
+ */
+final class SessionPreviewTriggers {
+
+    static final int PREVIEW_LENGTH = 120;
+
+    // Text-only preview of one message row; image-only messages get a placeholder
+    private static String previewOf(String row) {
+        return "CASE WHEN " + row + ".message IS NULL OR " + row + ".message = '' THEN '[Image]' "
+                + "ELSE substr(" + row + ".message, 1, " + PREVIEW_LENGTH + ") END";
+    }
+
+    private SessionPreviewTriggers() {
+    }
+
+    static void create(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `session_preview_after_insert` "
+                + "AFTER INSERT ON `chat_messages` BEGIN "
+                + "UPDATE `chat_sessions` SET messageCount = messageCount + 1, "
+                + "lastMessagePreview = CASE WHEN NEW.timestamp >= updatedAt THEN " + previewOf("NEW")
+                + " ELSE lastMessagePreview END, "
+                + "updatedAt = max(updatedAt, NEW.timestamp) "
+                + "WHERE sessionId = NEW.sessionId; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `session_preview_after_delete` "
+                + "AFTER DELETE ON `chat_messages` BEGIN "
+                + "UPDATE `chat_sessions` SET messageCount = max(messageCount - 1, 0), "
+                + "lastMessagePreview = (SELECT " + previewOf("m") + " FROM `chat_messages` m "
+                + "WHERE m.sessionId = OLD.sessionId ORDER BY m.timestamp DESC, m.messageId DESC LIMIT 1) "
+                + "WHERE sessionId = OLD.sessionId; END");
+    }
+
+    // Fills the preview columns for sessions that existed before the triggers
+    static void backfill(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("UPDATE `chat_sessions` SET "
+                + "messageCount = (SELECT COUNT(*) FROM `chat_messages` m WHERE m.sessionId = chat_sessions.sessionId), "
+                + "updatedAt = max(timestamp, coalesce((SELECT MAX(m.timestamp) FROM `chat_messages` m "
+                + "WHERE m.sessionId = chat_sessions.sessionId), 0)), "
+                + "lastMessagePreview = (SELECT " + previewOf("m") + " FROM `chat_messages` m "
+                + "WHERE m.sessionId = chat_sessions.sessionId ORDER BY m.timestamp DESC, m.messageId DESC LIMIT 1)");
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.chatbot2.db;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Triggers that keep chat_sessions.totalTokens equal to the sum of its messages' token counts,
+ * so the size of a session is one column read. Rows still NOT_COUNTED add nothing until
+ * TokenBackfill updates them, which the update trigger then adds to the total.
+ * Like SessionPreviewTriggers, these are created on a fresh install and in the migration.
+ */
+final class SessionTokenTriggers {
+
+    private SessionTokenTriggers() {
+    }
+
+    private static String tokensOf(String row) {
+        return "(max(" + row + ".textTokens, 0) + max(" + row + ".imageTokens, 0))";
+    }
+
+    static void create(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `session_tokens_after_insert` "
+                + "AFTER INSERT ON `chat_messages` BEGIN "
+                + "UPDATE `chat_sessions` SET totalTokens = totalTokens + " + tokensOf("NEW")
+                + " WHERE sessionId = NEW.sessionId; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `session_tokens_after_delete` "
+                + "AFTER DELETE ON `chat_messages` BEGIN "
+                + "UPDATE `chat_sessions` SET totalTokens = max(totalTokens - " + tokensOf("OLD") + ", 0)"
+                + " WHERE sessionId = OLD.sessionId; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `session_tokens_after_update` "
+                + "AFTER UPDATE OF textTokens, imageTokens ON `chat_messages` BEGIN "
+                + "UPDATE `chat_sessions` SET totalTokens = totalTokens - " + tokensOf("OLD") + " + " + tokensOf("NEW")
+                + " WHERE sessionId = NEW.sessionId; END");
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.chatbot2.db;
+
+import android.util.Log;
+
+import com.example.chatbot2.core.TokenEstimator;
+import com.google.common.util.concurrent.Futures;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Counts the tokens of messages written before token accounting existed.
+ * Walks the table on a background lane and hands each batch to the writer as its own short
+ * transaction, so chat writes queued behind it wait for one batch at most; it is idempotent, so an
+ * interrupted run just continues next launch.
+ */
+public final class TokenBackfill {
+
+    private static final String TAG = "TokenBackfill";
+    // Small, since every update also re-indexes the message's full-text entry
+    private static final int BATCH_SIZE = 100;
+
+    private TokenBackfill() {
+    }
+
+    // Blocks until every row is counted; call off the main thread and off the writer
+    public static void run(ChatDao chatDao, Executor writer) {
+        long afterMessageId = 0;
+        int counted = 0;
+        while (true) {
+            List<ChatMessageEntity> batch = chatDao.getUncountedMessages(afterMessageId, BATCH_SIZE);
+            if (batch.isEmpty()) break;
+            Futures.getUnchecked(Futures.submit(() -> chatDao.runInTransaction(dao -> {
+                for (ChatMessageEntity entity : batch) {
+                    dao.updateMessageTokens(entity.messageId, TokenEstimator.estimate(entity.message),
+                            entity.imageHash != null ? TokenEstimator.IMAGE_TOKENS : 0);
+                }
+            }), writer));
+            counted += batch.size();
+            afterMessageId = batch.get(batch.size() - 1).messageId;
+            if (batch.size() < BATCH_SIZE) break;
+        }
+        if (counted > 0) {
+            Log.d(TAG, "Counted tokens of " + counted + " older messages");
+        }
+    }
+}
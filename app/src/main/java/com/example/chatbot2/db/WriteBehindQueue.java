@@ -0,0 +1,352 @@
+package com.example.chatbot2.db;
+
+import android.util.Log;
+
+import com.example.chatbot2.Metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces chat writes and commits them in one transaction per flush.
+ * A flush runs once {@link #MAX_BATCH_SIZE} writes are pending or {@link #FLUSH_DELAY_MS} after
+ * the first one, on a dedicated writer thread. New sessions get a negative placeholder id at
+ * enqueue time so messages can be queued against them before the real row id exists.
+ * A batch whose transaction fails goes back to the front of the queue and is retried with
+ * exponential backoff; after {@link #MAX_ATTEMPTS} it is dropped and its new sessions are reported
+ * as failed, along with any later message queued against them.
+ */
+public class WriteBehindQueue {
+
+    private static final String TAG = "WriteBehindQueue";
+    static final int MAX_BATCH_SIZE = 32;
+    static final long FLUSH_DELAY_MS = 300;
+    static final int MAX_ATTEMPTS = 5;
+    static final long MAX_RETRY_DELAY_MS = 10_000;
+
+    // Callbacks run on the writer thread after the transaction commits, or once the batch is given up
+    public interface SessionCallback {
+        void onSessionInserted(long sessionId);
+        void onSessionFailed(Exception error);
+    }
+
+    public interface MessageCallback {
+        void onMessageInserted(long messageId);
+    }
+
+    private static class PendingSession {
+        final long placeholderId;
+        final ChatSession session;
+        final SessionCallback callback;
+
+        PendingSession(long placeholderId, ChatSession session, SessionCallback callback) {
+            this.placeholderId = placeholderId;
+            this.session = session;
+            this.callback = callback;
+        }
+    }
+
+    private static class PendingMessage {
+        final ChatMessageEntity entity;
+        final MessageCallback callback;
+
+        PendingMessage(ChatMessageEntity entity, MessageCallback callback) {
+            this.entity = entity;
+            this.callback = callback;
+        }
+    }
+
+    private static class SummaryUpdate {
+        final String summary;
+        final long summarizedUpToTimestamp;
+        final long summarizedUpToMessageId;
+
+        SummaryUpdate(String summary, long summarizedUpToTimestamp, long summarizedUpToMessageId) {
+            this.summary = summary;
+            this.summarizedUpToTimestamp = summarizedUpToTimestamp;
+            this.summarizedUpToMessageId = summarizedUpToMessageId;
+        }
+    }
+
+    private final ChatDao chatDao;
+    private final ScheduledExecutorService writer;
+
+    // Guarded by this
+    private List<PendingSession> pendingSessions = new ArrayList<>();
+    private List<PendingMessage> pendingMessages = new ArrayList<>();
+    private Map<Long, SummaryUpdate> pendingSummaries = new LinkedHashMap<>(); // Latest update per session wins
+    private final Map<Long, Long> resolvedSessionIds = new HashMap<>();
+    private final Set<Long> failedPlaceholders = new HashSet<>();
+    private final Set<Long> releasedPlaceholders = new HashSet<>();
+    private final Set<Long> inFlightPlaceholders = new HashSet<>(); // Referred to by the batch being committed
+    private long nextPlaceholderId = -2; // -1 already means "no session"
+    private ScheduledFuture<?> scheduledFlush;
+    private int failedAttempts; // Of the batch at the front of the queue
+
+    public WriteBehindQueue(ChatDao chatDao, ScheduledExecutorService writer) {
+        this.chatDao = chatDao;
+        this.writer = writer;
+    }
+
+    // --- Enqueueing ---
+
+    // Returns the placeholder id to use for this session until the callback reports the real one
+    public synchronized long enqueueNewSession(ChatSession session, SessionCallback callback) {
+        long placeholderId = nextPlaceholderId--;
+        pendingSessions.add(new PendingSession(placeholderId, session, callback));
+        onEnqueued();
+        return placeholderId;
+    }
+
+    public synchronized void enqueueMessage(ChatMessageEntity entity, MessageCallback callback) {
+        if (failedPlaceholders.contains(entity.sessionId)) {
+            Log.w(TAG, "Dropping a message for session " + entity.sessionId + ", which could not be saved");
+            return;
+        }
+        pendingMessages.add(new PendingMessage(entity, callback));
+        onEnqueued();
+    }
+
+    public synchronized void enqueueSessionSummary(long sessionId, String summary, long summarizedUpToTimestamp,
+                                                   long summarizedUpToMessageId) {
+        pendingSummaries.put(sessionId, new SummaryUpdate(summary, summarizedUpToTimestamp, summarizedUpToMessageId));
+        onEnqueued();
+    }
+
+    // The owner has swapped the placeholder for the real id (or given up on it) and will not queue more
+    // writes against it; its mapping goes once nothing still queued refers to it
+    public synchronized void releasePlaceholder(long placeholderId) {
+        releasedPlaceholders.add(placeholderId);
+        pruneReleased();
+    }
+
+    private void onEnqueued() {
+        if (failedAttempts > 0) {
+            return; // A retry is already scheduled; flushing early would only hammer a failing database
+        }
+        int pending = pendingSessions.size() + pendingMessages.size() + pendingSummaries.size();
+        if (pending >= MAX_BATCH_SIZE) {
+            flush();
+        } else if (scheduledFlush == null) {
+            scheduledFlush = writer.schedule(this::drain, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // --- Flushing ---
+
+    // Commits everything pending as soon as the writer thread is free
+    public synchronized Future<?> flush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return writer.submit(this::drain);
+    }
+
+    // For readers that must see every write enqueued so far; never call on the writer thread
+    public void flushAndWait() {
+        try {
+            flush().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Flush failed", e.getCause());
+        }
+    }
+
+    private void drain() {
+        final List<PendingSession> sessions;
+        final List<PendingMessage> messages;
+        final Map<Long, SummaryUpdate> summaries;
+        synchronized (this) {
+            scheduledFlush = null;
+            dropWritesForFailedSessions();
+            if (!hasPending()) {
+                return;
+            }
+            sessions = pendingSessions;
+            messages = pendingMessages;
+            summaries = pendingSummaries;
+            markInFlight(sessions, messages, summaries);
+            pendingSessions = new ArrayList<>();
+            pendingMessages = new ArrayList<>();
+            pendingSummaries = new LinkedHashMap<>();
+        }
+
+        final long[] messageIds = new long[messages.size()];
+        final long[] queuedSessionIds = new long[messages.size()];
+        final Map<Long, Long> inserted = new HashMap<>(); // Published only once the transaction commits
+        long start = Metrics.start();
+        try {
+            chatDao.runInTransaction(dao -> {
+                for (PendingSession pending : sessions) {
+                    inserted.put(pending.placeholderId, dao.insertSession(pending.session));
+                }
+                for (int i = 0; i < messages.size(); i++) {
+                    ChatMessageEntity entity = messages.get(i).entity;
+                    queuedSessionIds[i] = entity.sessionId;
+                    entity.sessionId = resolve(entity.sessionId, inserted);
+                    messageIds[i] = dao.insertMessage(entity);
+                }
+                for (Map.Entry<Long, SummaryUpdate> entry : summaries.entrySet()) {
+                    SummaryUpdate update = entry.getValue();
+                    dao.updateSessionSummary(resolve(entry.getKey(), inserted), update.summary,
+                            update.summarizedUpToTimestamp, update.summarizedUpToMessageId);
+                }
+            });
+        } catch (RuntimeException e) {
+            for (int i = 0; i < messages.size(); i++) {
+                if (queuedSessionIds[i] != 0) {
+                    messages.get(i).entity.sessionId = queuedSessionIds[i]; // Rolled back with the rest
+                }
+            }
+            onBatchFailed(sessions, messages, summaries, e);
+            return;
+        }
+        Metrics.get().recordSince(Metrics.DB_INSERT_BATCH, start);
+
+        synchronized (this) {
+            failedAttempts = 0;
+            resolvedSessionIds.putAll(inserted);
+            inFlightPlaceholders.clear();
+            pruneReleased();
+            if (scheduledFlush == null && hasPending()) {
+                onEnqueued(); // Writes queued while a retry was pending
+            }
+        }
+        for (PendingSession pending : sessions) {
+            if (pending.callback != null) {
+                pending.callback.onSessionInserted(inserted.get(pending.placeholderId));
+            }
+        }
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i).callback != null) {
+                messages.get(i).callback.onMessageInserted(messageIds[i]);
+            }
+        }
+    }
+
+    // Puts the batch back in front of anything queued since, or drops it once it has failed too often
+    private void onBatchFailed(List<PendingSession> sessions, List<PendingMessage> messages,
+                               Map<Long, SummaryUpdate> summaries, RuntimeException error) {
+        List<PendingSession> failedSessions;
+        synchronized (this) {
+            failedAttempts++;
+            inFlightPlaceholders.clear(); // Requeued below, or dropped for good
+            if (failedAttempts < MAX_ATTEMPTS) {
+                sessions.addAll(pendingSessions);
+                messages.addAll(pendingMessages);
+                summaries.putAll(pendingSummaries); // Newer updates win
+                pendingSessions = sessions;
+                pendingMessages = messages;
+                pendingSummaries = summaries;
+                long delay = Math.min(MAX_RETRY_DELAY_MS, FLUSH_DELAY_MS << failedAttempts);
+                Log.w(TAG, "Batch of " + messages.size() + " messages failed (attempt " + failedAttempts
+                        + "), retrying in " + delay + " ms", error);
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                }
+                scheduledFlush = writer.schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+                return;
+            }
+            Log.e(TAG, "Dropping a batch of " + messages.size() + " messages after " + failedAttempts + " attempts", error);
+            failedAttempts = 0;
+            failedSessions = sessions;
+            for (PendingSession pending : sessions) {
+                failedPlaceholders.add(pending.placeholderId);
+            }
+            dropWritesForFailedSessions();
+            pruneReleased();
+            if (hasPending()) {
+                onEnqueued();
+            }
+        }
+        for (PendingSession pending : failedSessions) {
+            if (pending.callback != null) {
+                pending.callback.onSessionFailed(error);
+            }
+        }
+    }
+
+    // Called with the lock held
+    private boolean hasPending() {
+        return !pendingSessions.isEmpty() || !pendingMessages.isEmpty() || !pendingSummaries.isEmpty();
+    }
+
+    // Called with the lock held; writes for a session that was never created can only fail
+    private void dropWritesForFailedSessions() {
+        if (failedPlaceholders.isEmpty()) return;
+        int dropped = 0;
+        for (int i = pendingMessages.size() - 1; i >= 0; i--) {
+            if (failedPlaceholders.contains(pendingMessages.get(i).entity.sessionId)) {
+                pendingMessages.remove(i);
+                dropped++;
+            }
+        }
+        pendingSummaries.keySet().removeAll(failedPlaceholders);
+        if (dropped > 0) {
+            Log.w(TAG, "Dropped " + dropped + " messages for sessions that could not be saved");
+        }
+    }
+
+    // Called with the lock held; keeps the mappings the batch resolves against until it commits or is given up
+    private void markInFlight(List<PendingSession> sessions, List<PendingMessage> messages,
+                              Map<Long, SummaryUpdate> summaries) {
+        for (PendingSession pending : sessions) {
+            inFlightPlaceholders.add(pending.placeholderId);
+        }
+        for (PendingMessage pending : messages) {
+            if (pending.entity.sessionId < 0) inFlightPlaceholders.add(pending.entity.sessionId);
+        }
+        for (long sessionId : summaries.keySet()) {
+            if (sessionId < 0) inFlightPlaceholders.add(sessionId);
+        }
+    }
+
+    // Called with the lock held
+    private void pruneReleased() {
+        for (Iterator<Long> it = releasedPlaceholders.iterator(); it.hasNext(); ) {
+            long placeholderId = it.next();
+            if (isReferenced(placeholderId)) continue;
+            resolvedSessionIds.remove(placeholderId);
+            failedPlaceholders.remove(placeholderId);
+            it.remove();
+        }
+    }
+
+    // Called with the lock held
+    private boolean isReferenced(long placeholderId) {
+        if (inFlightPlaceholders.contains(placeholderId) || pendingSummaries.containsKey(placeholderId)) return true;
+        for (PendingSession pending : pendingSessions) {
+            if (pending.placeholderId == placeholderId) return true;
+        }
+        for (PendingMessage pending : pendingMessages) {
+            if (pending.entity.sessionId == placeholderId) return true;
+        }
+        return false;
+    }
+
+    // Real ids pass through; a placeholder with no mapping is a bug, never a row to insert against
+    private synchronized long resolve(long sessionId, Map<Long, Long> inserted) {
+        if (sessionId >= 0) return sessionId;
+        Long resolved = inserted.get(sessionId);
+        if (resolved == null) {
+            resolved = resolvedSessionIds.get(sessionId);
+        }
+        if (resolved == null) {
+            throw new IllegalStateException("No session id for placeholder " + sessionId);
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.chatbot2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private final FakeScheduler clock = new FakeScheduler();
+    private final CircuitBreaker breaker = new CircuitBreaker(3, 1_000, clock.ticker());
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void successResetsTheFailureCount() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void open_halfOpen_closed() {
+        openCircuit();
+
+        clock.advance(999);
+        assertFalse(breaker.allowRequest());
+        clock.advance(1);
+        assertTrue(breaker.allowRequest()); // The probe
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest()); // Only one at a time
+
+        breaker.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void failedProbeReopens() {
+        openCircuit();
+        clock.advance(1_000);
+        assertTrue(breaker.allowRequest());
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        clock.advance(999);
+        assertFalse(breaker.allowRequest());
+        clock.advance(1);
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void lostProbeDoesNotKeepTheCircuitShut() {
+        openCircuit();
+        clock.advance(1_000);
+        assertTrue(breaker.allowRequest());
+
+        clock.advance(1_000);
+
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    private void openCircuit() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.chatbot2;
+
+import com.google.common.base.Ticker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single-threaded scheduler on a virtual clock. Nothing runs until {@link #advance} moves the
+ * clock, and then every task that has come due runs in time order on the calling thread, so
+ * deadline, backoff and hedge timings are the same on every run.
+ */
+class FakeScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+    private long nowNanos;
+    private long sequence;
+
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nowNanos;
+        }
+    };
+
+    Ticker ticker() {
+        return ticker;
+    }
+
+    long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nowNanos);
+    }
+
+    // Runs everything due up to now + millis, including tasks those tasks schedule
+    void advance(long millis) {
+        long target = nowNanos + TimeUnit.MILLISECONDS.toNanos(millis);
+        Task next;
+        while ((next = tasks.peek()) != null && next.dueNanos <= target) {
+            tasks.poll();
+            nowNanos = Math.max(nowNanos, next.dueNanos);
+            next.run();
+        }
+        nowNanos = target;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        Task task = new Task(command, nowNanos + unit.toNanos(Math.max(0, delay)), sequence++);
+        tasks.add(task);
+        return task;
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+    }
+
+    // Runs on the next advance, even advance(0)
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return false;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return false;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return true;
+    }
+
+    private class Task implements ScheduledFuture<Object>, Runnable {
+        final Runnable command;
+        final long dueNanos;
+        final long order;
+        boolean cancelled;
+        boolean done;
+
+        Task(Runnable command, long dueNanos, long order) {
+            this.command = command;
+            this.dueNanos = dueNanos;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) return;
+            done = true;
+            command.run();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - nowNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            Task task = (Task) other;
+            int byTime = Long.compare(dueNanos, task.dueNanos);
+            return byTime != 0 ? byTime : Long.compare(order, task.order);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (done || cancelled) return false;
+            cancelled = true;
+            tasks.remove(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done || cancelled;
+        }
+
+        @Override
+        public Object get() {
+            return null;
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.chatbot2;
+
+import com.google.ai.client.generativeai.type.Content;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ModelRouterTest {
+
+    private static final List<Content> PROMPT = new ArrayList<>();
+    private static final ResilientBackend.Policy POLICY =
+            new ResilientBackend.Policy(10_000, 1_000, 1_000, 1, 100, 1_000, false, 0);
+
+    private final FakeScheduler scheduler = new FakeScheduler();
+    private final FakeBackend light = new FakeBackend("light", scheduler, 100, 10);
+    private final FakeBackend standard = new FakeBackend("standard", scheduler, 100, 10);
+    private final FakeBackend heavy = new FakeBackend("heavy", scheduler, 100, 10);
+    private final ModelRouter router = new ModelRouter(resilient(light), resilient(standard), resilient(heavy),
+            scheduler.ticker());
+
+    @Test
+    public void shortTurn_goesToTheLightModel() {
+        assertEquals("light", shortTurn(false).getName());
+    }
+
+    @Test
+    public void slowWholeReplies_doNotMoveStreams() throws Exception {
+        reply(shortTurn(false), light, 500);
+        reply(router.route(3_000, 500, false, false), standard, 100);
+
+        assertEquals("standard", shortTurn(false).getName());
+        // Nothing is known yet about how soon either streams its first chunk
+        assertEquals("light", shortTurn(true).getName());
+    }
+
+    @Test
+    public void slowLightModel_isProbedAndCanRecover() throws Exception {
+        reply(shortTurn(false), light, 110);
+        reply(router.route(3_000, 500, false, false), standard, 100);
+
+        for (int i = 1; i < ModelRouter.PROBE_EVERY; i++) {
+            assertEquals("standard", shortTurn(false).getName());
+        }
+        ChatBackend probe = shortTurn(false);
+        assertEquals("light", probe.getName());
+
+        // 110 ms eased towards 20 ms is now quicker than the standard model
+        reply(probe, light, 20);
+        assertEquals("light", shortTurn(false).getName());
+    }
+
+    @Test
+    public void failedCalls_doNotCountAsLatency() throws Exception {
+        reply(router.route(3_000, 500, false, false), standard, 100);
+        light.then(FakeBackend.Outcome.fail(500, new IllegalArgumentException("blocked prompt")));
+        ListenableFuture<String> failed = shortTurn(false).generate(PROMPT);
+        scheduler.advance(500);
+        assertTrue(failed.isDone());
+
+        assertEquals("light", shortTurn(false).getName());
+    }
+
+    @Test
+    public void background_usesTheLightTier() {
+        assertEquals("light", router.routeBackground().getName());
+    }
+
+    private ChatBackend shortTurn(boolean streaming) {
+        return router.route(100, 10, false, streaming);
+    }
+
+    private void reply(ChatBackend route, FakeBackend fake, long latencyMillis) throws Exception {
+        fake.then(FakeBackend.Outcome.reply(latencyMillis, "done"));
+        ListenableFuture<String> reply = route.generate(PROMPT);
+        scheduler.advance(latencyMillis);
+        assertEquals("done", reply.get());
+    }
+
+    private ResilientBackend resilient(FakeBackend fake) {
+        return new ResilientBackend(fake, scheduler, POLICY,
+                new CircuitBreaker(5, 1_000, scheduler.ticker()), scheduler.ticker());
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.chatbot2;
+
+import com.google.ai.client.generativeai.type.Content;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResilientBackendTest {
+
+    private static final List<Content> PROMPT = new ArrayList<>();
+
+    private final FakeScheduler scheduler = new FakeScheduler();
+    private final FakeBackend fake = new FakeBackend("fake", scheduler, 100, 10);
+
+    // --- Deadlines ---
+
+    @Test
+    public void deadline_failsAnAttemptThatNeverAnswers() throws Exception {
+        ResilientBackend backend = newBackend(new ResilientBackend.Policy(1_000, 1_000, 1_000, 1, 100, 1_000, false, 0), 5);
+        fake.then(FakeBackend.Outcome.stall());
+
+        ListenableFuture<String> reply = backend.generate(PROMPT);
+        scheduler.advance(999);
+        assertFalse(reply.isDone());
+        scheduler.advance(1);
+
+        assertTrue(failureOf(reply) instanceof TimeoutException);
+        assertEquals(1, fake.getCallCount());
+    }
+
+    @Test
+    public void deadline_retriesATimedOutAttempt() throws Exception {
+        ResilientBackend backend = newBackend(new ResilientBackend.Policy(1_000, 1_000, 1_000, 2, 100, 1_000, false, 0), 5);
+        fake.then(FakeBackend.Outcome.stall()).then(FakeBackend.Outcome.reply(50, "late but fine"));
+
+        ListenableFuture<String> reply = backend.generate(PROMPT);
+        scheduler.advance(1_000 + 100 + 50);
+
+        assertEquals("late but fine", reply.get());
+        assertEquals(2, fake.getCallCount());
+    }
+
+    // --- Retries ---
+
+    @Test
+    public void retry_backsOffAfterARetryableFailure() throws Exception {
+        ResilientBackend backend = newBackend(new ResilientBackend.Policy(10_000, 1_000, 1_000, 3, 100, 1_000, false, 0), 5);
+        fake.then(FakeBackend.Outcome.fail(10, new IOException("connection reset")))
+                .then(FakeBackend.Outcome.fail(200, new IOException("connection reset")))
+                .then(FakeBackend.Outcome.reply(10, "ok"));
+
+        ListenableFuture<String> reply = backend.generate(PROMPT);
+        // Full jitter: the first retry comes within 100 ms of the failure, the second within 200 ms
+        scheduler.advance(10 + 100);
+        assertEquals(2, fake.getCallCount());
+        scheduler.advance(200 + 200 + 10);
+
+        assertEquals("ok", reply.get());
+        assertEquals(3, fake.getCallCount());
+        assertTrue(backend.getStatsSummary().contains("retries=2"));
+    }
+
+    @Test
+    public void retry_givesUpAfterMaxAttempts() throws Exception {
+        ResilientBackend backend = newBackend(new ResilientBackend.Policy(10_000, 1_000, 1_000, 2, 100, 1_000, false, 0), 5);
+        fake.then(FakeBackend.Outcome.fail(10, new IOException("first")))
+                .then(FakeBackend.Outcome.fail(10, new IOException("second")));
+
+        ListenableFuture<String> reply = backend.generate(PROMPT);
+        scheduler.advance(1_000);
+
+        assertEquals("second", failureOf(reply).getMessage());
+        assertEquals(2, fake.getCallCount());
+    }
+
+    @Test
+    public void retry_skipsFailuresThatWouldRepeat() throws Exception {
+        ResilientBackend backend = newBackend(new ResilientBackend.Policy(10_000, 1_000, 1_000, 3, 100, 1_000, false, 0), 5);
+        fake.then(FakeBackend.Outcome.fail(10, new IllegalArgumentException("blocked prompt")));
+
+        ListenableFuture<String> reply = backend.generate(PROMPT);
+        scheduler.advance(1_000);
+
+        assertTrue(failureOf(reply) instanceof IllegalArgumentException);
+        assertEquals(1, fake.getCallCount());
+    }
+
+    // --- Hedging ---
+
+    @Test
+    public void hedge_firesOnceTheP95DelayPasses() throws Exception {
+        ResilientBackend backend = newBackend(new ResilientBackend.Policy(10_000, 1_000, 1_000, 1, 100, 1_000, true, 100), 5);
+        warmUp(backend, 200);
+        int callsBefore = fake.getCallCount();
+        fake.then(FakeBackend.Outcome.stall()).then(FakeBackend.Outcome.reply(50, "hedged"));
+
+        ListenableFuture<String> reply = backend.generate(PROMPT);
+        scheduler.advance(199);
+        assertEquals(callsBefore + 1, fake.getCallCount());
+        scheduler.advance(1);
+        assertEquals(callsBefore + 2, fake.getCallCount());
+        scheduler.advance(50);
+
+        assertEquals("hedged", reply.get());
+        assertTrue(backend.getStatsSummary().contains("hedges=1 (won 1)"));
+    }
+
+    @Test
+    public void hedge_waitsForEnoughSamples() throws Exception {
+        ResilientBackend backend = newBackend(new ResilientBackend.Policy(10_000, 1_000, 1_000, 1, 100, 1_000, true, 100), 5);
+        fake.then(FakeBackend.Outcome.reply(5_000, "slow"));
+
+        ListenableFuture<String> reply = backend.generate(PROMPT);
+        scheduler.advance(5_000);
+
+        assertEquals("slow", reply.get());
+        assertEquals(1, fake.getCallCount());
+    }
+
+    // --- Streams ---
+
+    @Test
+    public void stream_retriesBeforeTheFirstChunk() {
+        ResilientBackend backend = newBackend(new ResilientBackend.Policy(10_000, 1_000, 1_000, 2, 100, 1_000, false, 0), 5);
+        fake.then(FakeBackend.Outcome.fail(10, new IOException("reset")))
+                .then(FakeBackend.Outcome.reply(10, "hello there"));
+        RecordingListener listener = new RecordingListener();
+
+        backend.stream(PROMPT, listener);
+        scheduler.advance(10 + 100 + 10 + 10);
+
+        assertEquals("hello there", listener.text.toString());
+        assertTrue(listener.completed);
+        assertEquals(2, fake.getCallCount());
+    }
+
+    @Test
+    public void stream_timesOutWithoutAFirstChunk() {
+        ResilientBackend backend = newBackend(new ResilientBackend.Policy(10_000, 1_000, 1_000, 1, 100, 1_000, false, 0), 5);
+        fake.then(FakeBackend.Outcome.stall());
+        RecordingListener listener = new RecordingListener();
+
+        backend.stream(PROMPT, listener);
+        scheduler.advance(999);
+        assertNull(listener.error);
+        scheduler.advance(1);
+
+        assertTrue(listener.error instanceof TimeoutException);
+    }
+
+    @Test
+    public void stream_hedgesOnceTheFirstChunkP95Passes() {
+        ResilientBackend backend = newBackend(new ResilientBackend.Policy(10_000, 1_000, 1_000, 1, 100, 1_000, true, 100), 5);
+        warmUpStreams(backend, 200);
+        int callsBefore = fake.getCallCount();
+        fake.then(FakeBackend.Outcome.stall()).then(FakeBackend.Outcome.reply(50, "hedged reply"));
+        RecordingListener listener = new RecordingListener();
+
+        backend.stream(PROMPT, listener);
+        scheduler.advance(199);
+        assertEquals(callsBefore + 1, fake.getCallCount());
+        scheduler.advance(1);
+        assertEquals(callsBefore + 2, fake.getCallCount());
+        scheduler.advance(100);
+
+        assertEquals("hedged reply", listener.text.toString());
+        assertTrue(listener.completed);
+        assertTrue(backend.getStatsSummary().contains("hedges=1 (won 1)"));
+    }
+
+    @Test
+    public void stream_keepsOnlyTheRequestThatAnsweredFirst() {
+        ResilientBackend backend = newBackend(new ResilientBackend.Policy(10_000, 1_000, 1_000, 1, 100, 1_000, true, 100), 5);
+        warmUpStreams(backend, 200);
+        // The primary is late, but still beats the hedge to its first chunk
+        fake.then(FakeBackend.Outcome.reply(250, "primary wins"))
+                .then(FakeBackend.Outcome.reply(100, "hedge loses"));
+        RecordingListener listener = new RecordingListener();
+
+        backend.stream(PROMPT, listener);
+        scheduler.advance(1_000);
+
+        assertEquals("primary wins", listener.text.toString());
+        assertTrue(listener.completed);
+        assertTrue(backend.getStatsSummary().contains("hedges=1 (won 0)"));
+    }
+
+    // --- Circuit breaker ---
+
+    @Test
+    public void breaker_open_halfOpen_closed() throws Exception {
+        ResilientBackend backend = newBackend(new ResilientBackend.Policy(10_000, 1_000, 1_000, 1, 100, 1_000, false, 0), 2);
+        fake.then(FakeBackend.Outcome.fail(10, new IOException("down")))
+                .then(FakeBackend.Outcome.fail(10, new IOException("down")));
+        for (int i = 0; i < 2; i++) {
+            backend.generate(PROMPT);
+            scheduler.advance(10);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, backend.getCircuitState());
+
+        // Open: fails fast without calling the backend
+        ListenableFuture<String> rejected = backend.generate(PROMPT);
+        assertTrue(failureOf(rejected) instanceof ResilientBackend.BackendUnavailableException);
+        assertEquals(2, fake.getCallCount());
+
+        // Half-open: one probe goes through, and its success closes the circuit
+        scheduler.advance(1_000);
+        fake.then(FakeBackend.Outcome.reply(10, "back"));
+        ListenableFuture<String> probe = backend.generate(PROMPT);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, backend.getCircuitState());
+        scheduler.advance(10);
+
+        assertEquals("back", probe.get());
+        assertEquals(CircuitBreaker.State.CLOSED, backend.getCircuitState());
+        assertEquals(3, fake.getCallCount());
+    }
+
+    // --- Helpers ---
+
+    private ResilientBackend newBackend(ResilientBackend.Policy policy, int failureThreshold) {
+        return new ResilientBackend(fake, scheduler, policy,
+                new CircuitBreaker(failureThreshold, 1_000, scheduler.ticker()), scheduler.ticker());
+    }
+
+    // Enough replies of the given latency to make it the p95
+    private void warmUp(ResilientBackend backend, long latencyMillis) throws Exception {
+        for (int i = 0; i < 20; i++) {
+            fake.then(FakeBackend.Outcome.reply(latencyMillis, "warm"));
+            ListenableFuture<String> reply = backend.generate(PROMPT);
+            scheduler.advance(latencyMillis);
+            assertEquals("warm", reply.get());
+        }
+    }
+
+    private void warmUpStreams(ResilientBackend backend, long firstChunkMillis) {
+        for (int i = 0; i < 20; i++) {
+            fake.then(FakeBackend.Outcome.reply(firstChunkMillis, "warm"));
+            RecordingListener listener = new RecordingListener();
+            backend.stream(PROMPT, listener);
+            scheduler.advance(firstChunkMillis);
+            assertTrue(listener.completed);
+        }
+    }
+
+    private static class RecordingListener implements ChatBackend.StreamListener {
+        final StringBuilder text = new StringBuilder();
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onChunk(String chunk) {
+            text.append(chunk);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static Throwable failureOf(ListenableFuture<?> future) throws InterruptedException {
+        assertTrue("still running", future.isDone());
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("succeeded");
+        return null;
+    }
+}
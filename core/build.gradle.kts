@@ -0,0 +1,24 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+// Platform-independent chat logic, so it can be benchmarked and tested on the JVM
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+// ./gradlew :core:jmh writes results to core/build/results/jmh/ for comparing against earlier runs
+jmh {
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    humanOutputFile.set(layout.buildDirectory.file("results/jmh/human.txt"))
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,58 @@
+package com.example.chatbot2.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Encoding and decoding a whole session, for choosing between a readable and a compact export format
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CodecBenchmark {
+
+    @Param({"ndjson", "binary"})
+    public String codecName;
+
+    @Param({"200", "2000"})
+    public int sessionSize;
+
+    private MessageCodec codec;
+    private List<MessageRecord> records;
+    private List<byte[]> encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        codec = "binary".equals(codecName) ? new BinaryMessageCodec() : new NdjsonMessageCodec();
+        records = SyntheticSession.records(SyntheticSession.turns(sessionSize, 7), 1);
+        encoded = new ArrayList<>(records.size());
+        for (MessageRecord record : records) {
+            encoded.add(codec.encode(record));
+        }
+    }
+
+    @Benchmark
+    public void encodeSession(Blackhole blackhole) {
+        for (MessageRecord record : records) {
+            blackhole.consume(codec.encode(record));
+        }
+    }
+
+    @Benchmark
+    public void decodeSession(Blackhole blackhole) throws IOException {
+        for (byte[] bytes : encoded) {
+            blackhole.consume(codec.decode(bytes));
+        }
+    }
+}
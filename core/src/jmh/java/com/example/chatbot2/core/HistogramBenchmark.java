@@ -0,0 +1,38 @@
+package com.example.chatbot2.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Recording is on hot paths (every frame while scrolling, every DB page), so it must stay in the nanoseconds
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HistogramBenchmark {
+
+    private final Histogram histogram = new Histogram();
+
+    @Benchmark
+    public void record() {
+        histogram.record(ThreadLocalRandom.current().nextLong(1_000_000));
+    }
+
+    // Frame metrics, DB reads and network callbacks record from different threads at once
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        histogram.record(ThreadLocalRandom.current().nextLong(1_000_000));
+    }
+
+    @Benchmark
+    public long percentile() {
+        return histogram.getPercentile(99);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.chatbot2.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// What happens on every send and every session open: costing, folding and assembling the replayed history
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HistoryBenchmark {
+
+    private static final int TOKEN_BUDGET = 8000;
+    private static final int MIN_TURNS_KEPT = 2;
+    private static final int MAX_HISTORY_IMAGES = 2;
+
+    // Turns in the session: a short chat, a long one and a multi-year one
+    @Param({"20", "200", "2000"})
+    public int sessionSize;
+
+    private List<SyntheticSession.Turn> turns;
+
+    @Setup
+    public void setUp() {
+        turns = SyntheticSession.turns(sessionSize, 42);
+        int oldest = HistoryPlanner.oldestReplayedImage(turns, MAX_HISTORY_IMAGES);
+        for (int i = oldest; i < turns.size(); i++) {
+            turns.get(i).imageAttached = turns.get(i).imageHash != null;
+        }
+    }
+
+    @Benchmark
+    public int estimateTokens() {
+        return HistoryPlanner.estimateTokens(null, turns);
+    }
+
+    @Benchmark
+    public int planFold() {
+        return HistoryPlanner.turnsToFold(null, turns, TOKEN_BUDGET, MIN_TURNS_KEPT);
+    }
+
+    @Benchmark
+    public void buildReplayTexts(Blackhole blackhole) {
+        for (SyntheticSession.Turn turn : turns) {
+            blackhole.consume(HistoryPlanner.replayText(turn));
+        }
+    }
+
+    @Benchmark
+    public String buildSummaryPrompt() {
+        int fold = HistoryPlanner.turnsToFold(null, turns, TOKEN_BUDGET, MIN_TURNS_KEPT);
+        return HistoryPlanner.summaryPrompt(null, turns.subList(0, fold));
+    }
+
+    @Benchmark
+    public String fingerprint() {
+        return HistoryPlanner.fingerprint(turns);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.chatbot2.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Deterministic chat sessions shaped like real ones: short prompts, long replies, occasional images
+final class SyntheticSession {
+
+    private static final String WORDS = "the model returned a detailed answer with code lists and tables about "
+            + "android room glide gemini streaming tokens summary context budget image attachment";
+
+    static final class Turn implements HistoryTurn {
+        final boolean fromUser;
+        final String text;
+        final String imageHash;
+        final int textTokens;
+        boolean imageAttached;
+
+        Turn(boolean fromUser, String text, String imageHash) {
+            this.fromUser = fromUser;
+            this.text = text;
+            this.imageHash = imageHash;
+            this.textTokens = TokenEstimator.estimate(text);
+        }
+
+        @Override public boolean isFromUser() { return fromUser; }
+        @Override public String getText() { return text; }
+        @Override public int getTextTokens() { return textTokens; }
+        @Override public String getImageHash() { return imageHash; }
+        @Override public boolean isImageAttached() { return imageAttached; }
+    }
+
+    private SyntheticSession() {
+    }
+
+    static List<Turn> turns(int count, long seed) {
+        Random random = new Random(seed);
+        String[] words = WORDS.split(" ");
+        List<Turn> turns = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean fromUser = i % 2 == 0;
+            // Prompts are a sentence or two, replies a few paragraphs
+            int wordCount = fromUser ? 5 + random.nextInt(30) : 80 + random.nextInt(400);
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < wordCount; w++) {
+                if (w > 0) text.append(w % 40 == 0 ? "\n\n" : " ");
+                text.append(words[random.nextInt(words.length)]);
+            }
+            String imageHash = fromUser && random.nextInt(10) == 0 ? Long.toHexString(random.nextLong()) : null;
+            turns.add(new Turn(fromUser, text.toString(), imageHash));
+        }
+        return turns;
+    }
+
+    static List<MessageRecord> records(List<Turn> turns, long sessionId) {
+        List<MessageRecord> records = new ArrayList<>(turns.size());
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < turns.size(); i++) {
+            Turn turn = turns.get(i);
+            timestamp += 1000 + i * 37L;
+            records.add(new MessageRecord(sessionId, i + 1, turn.fromUser ? "USER" : "BOT", turn.text,
+                    turn.imageHash, turn.imageHash != null ? 1536 : 0, turn.imageHash != null ? 1152 : 0, timestamp));
+        }
+        return records;
+    }
+}
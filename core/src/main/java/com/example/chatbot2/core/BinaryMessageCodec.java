@@ -0,0 +1,80 @@
+package com.example.chatbot2.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+// Fixed field order with length-prefixed UTF-8 strings; compact and fast, but not readable or self-describing
+public class BinaryMessageCodec implements MessageCodec {
+
+    private static final int VERSION = 1;
+    private static final int NULL_LENGTH = -1;
+
+    @Override
+    public byte[] encode(MessageRecord record) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + length(record.message));
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeLong(record.sessionId);
+            out.writeLong(record.messageId);
+            writeString(out, record.sender);
+            writeString(out, record.message);
+            writeString(out, record.imageHash);
+            out.writeInt(record.imageWidth);
+            out.writeInt(record.imageHeight);
+            out.writeLong(record.timestamp);
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing to memory failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public MessageRecord decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported record version " + version);
+        }
+        long sessionId = in.readLong();
+        long messageId = in.readLong();
+        String sender = readString(in);
+        String message = readString(in);
+        String imageHash = readString(in);
+        int imageWidth = in.readInt();
+        int imageHeight = in.readInt();
+        long timestamp = in.readLong();
+        return new MessageRecord(sessionId, messageId, sender, message, imageHash, imageWidth, imageHeight, timestamp);
+    }
+
+    // writeUTF is limited to 64 KB, which long replies exceed
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0) {
+            throw new IOException("Corrupt string length " + length);
+        }
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
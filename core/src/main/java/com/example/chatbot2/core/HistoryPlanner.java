@@ -0,0 +1,101 @@
+package com.example.chatbot2.core;
+
+import java.util.List;
+
+/**
+ * The decisions behind the replayed history: what each turn costs, which turns to fold into the
+ * rolling summary, which images are still sent and what text stands in for the rest.
+ */
+public final class HistoryPlanner {
+
+    public static final String OMITTED_IMAGE_NOTE = "[An image was shared here earlier]";
+
+    private HistoryPlanner() {
+    }
+
+    public static int tokens(HistoryTurn turn) {
+        int textTokens = turn.getTextTokens();
+        if (turn.isImageAttached()) {
+            return textTokens + TokenEstimator.IMAGE_TOKENS;
+        }
+        return textTokens + (turn.getImageHash() != null ? TokenEstimator.estimate(OMITTED_IMAGE_NOTE) : 0);
+    }
+
+    public static int estimateTokens(String summary, List<? extends HistoryTurn> turns) {
+        int total = TokenEstimator.estimate(summary);
+        for (HistoryTurn turn : turns) {
+            total += tokens(turn);
+        }
+        return total;
+    }
+
+    // Whole exchanges to fold so the kept turns fit in half the budget; 0 while under budget
+    public static int turnsToFold(String summary, List<? extends HistoryTurn> turns, int tokenBudget, int minTurnsKept) {
+        if (estimateTokens(summary, turns) <= tokenBudget) {
+            return 0;
+        }
+        int foldCount = 0;
+        int remaining = estimateTokens(null, turns);
+        while (turns.size() - foldCount > minTurnsKept && remaining > tokenBudget / 2) {
+            remaining -= tokens(turns.get(foldCount));
+            foldCount++;
+            if (foldCount < turns.size() && !turns.get(foldCount).isFromUser()) {
+                remaining -= tokens(turns.get(foldCount));
+                foldCount++;
+            }
+        }
+        return foldCount;
+    }
+
+    // Index of the oldest turn whose image is still replayed; images before it are only mentioned
+    public static int oldestReplayedImage(List<? extends HistoryTurn> turns, int maxImages) {
+        int imagesSeen = 0;
+        for (int i = turns.size() - 1; i >= 0; i--) {
+            if (turns.get(i).getImageHash() == null) continue;
+            imagesSeen++;
+            if (imagesSeen == maxImages) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    // The text sent for a turn, noting an image that is no longer replayed
+    public static String replayText(HistoryTurn turn) {
+        String text = turn.getText() != null ? turn.getText() : "";
+        if (turn.getImageHash() != null && !turn.isImageAttached()) {
+            return text.isEmpty() ? OMITTED_IMAGE_NOTE : text + "\n" + OMITTED_IMAGE_NOTE;
+        }
+        return text;
+    }
+
+    public static String summaryPrompt(String previousSummary, List<? extends HistoryTurn> folded) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("Update the running summary of a conversation between a user and an assistant. ")
+                .append("Keep every fact, decision, name and open question that later turns may rely on. ")
+                .append("Reply with the summary only.\n\n");
+        if (previousSummary != null && !previousSummary.isEmpty()) {
+            prompt.append("Current summary:\n").append(previousSummary).append("\n\n");
+        }
+        prompt.append("New turns:\n");
+        for (HistoryTurn turn : folded) {
+            prompt.append(turn.isFromUser() ? "User: " : "Assistant: ");
+            if (turn.getImageHash() != null) {
+                prompt.append("[image] ");
+            }
+            prompt.append(turn.getText() != null ? turn.getText() : "").append('\n');
+        }
+        return prompt.toString();
+    }
+
+    // Identifies the recent exchange a prompt follows, so cached replies are not reused out of context
+    public static String fingerprint(List<? extends HistoryTurn> turns) {
+        StringBuilder fingerprint = new StringBuilder();
+        for (int i = Math.max(0, turns.size() - 2); i < turns.size(); i++) {
+            HistoryTurn turn = turns.get(i);
+            fingerprint.append(turn.isFromUser() ? "USER" : "BOT").append(':')
+                    .append(turn.getText()).append('\u0000');
+        }
+        return fingerprint.toString();
+    }
+}
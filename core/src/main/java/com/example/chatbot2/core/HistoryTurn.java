@@ -0,0 +1,18 @@
+package com.example.chatbot2.core;
+
+// One side of an exchange as the history logic sees it, independent of how the app holds images
+public interface HistoryTurn {
+
+    boolean isFromUser();
+
+    String getText();
+
+    // Estimated tokens of getText(), counted once when the message is written rather than on every plan
+    int getTextTokens();
+
+    // Null for text-only turns
+    String getImageHash();
+
+    // True while the image itself will be replayed, not just mentioned
+    boolean isImageAttached();
+}
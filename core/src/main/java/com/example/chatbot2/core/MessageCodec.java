@@ -0,0 +1,11 @@
+package com.example.chatbot2.core;
+
+import java.io.IOException;
+
+// Turns one message into bytes and back; framing between records is up to the caller
+public interface MessageCodec {
+
+    byte[] encode(MessageRecord record);
+
+    MessageRecord decode(byte[] bytes) throws IOException;
+}
@@ -0,0 +1,26 @@
+package com.example.chatbot2.core;
+
+// A stored chat message in a form every codec can write, independent of Room
+public final class MessageRecord {
+
+    public final long sessionId;
+    public final long messageId;
+    public final String sender; // "USER" or "BOT", as stored in chat_messages
+    public final String message;
+    public final String imageHash;
+    public final int imageWidth;
+    public final int imageHeight;
+    public final long timestamp;
+
+    public MessageRecord(long sessionId, long messageId, String sender, String message,
+                         String imageHash, int imageWidth, int imageHeight, long timestamp) {
+        this.sessionId = sessionId;
+        this.messageId = messageId;
+        this.sender = sender;
+        this.message = message;
+        this.imageHash = imageHash;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.timestamp = timestamp;
+    }
+}
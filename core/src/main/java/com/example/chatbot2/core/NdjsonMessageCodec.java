@@ -0,0 +1,286 @@
+package com.example.chatbot2.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One flat JSON object per message, meant to be written one per line (NDJSON).
+ * Readable and diffable, and tolerant of unknown keys so older readers accept newer files.
+ * Exports interleave two other line types, told apart by their "type" key: a header first,
+ * then each session ahead of its messages. Message lines carry no type so plain dumps stay valid.
+ */
+public class NdjsonMessageCodec implements MessageCodec {
+
+    public static final String TYPE_HEADER = "export";
+    public static final String TYPE_SESSION = "session";
+    public static final String TYPE_MESSAGE = "message";
+
+    @Override
+    public byte[] encode(MessageRecord record) {
+        return toJson(record).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public MessageRecord decode(byte[] bytes) throws IOException {
+        return fromJson(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    public String toJson(MessageRecord record) {
+        StringBuilder json = new StringBuilder(96 + (record.message != null ? record.message.length() : 0));
+        json.append("{\"sessionId\":").append(record.sessionId)
+                .append(",\"messageId\":").append(record.messageId)
+                .append(",\"sender\":");
+        appendString(json, record.sender);
+        json.append(",\"message\":");
+        appendString(json, record.message);
+        json.append(",\"imageHash\":");
+        appendString(json, record.imageHash);
+        json.append(",\"imageWidth\":").append(record.imageWidth)
+                .append(",\"imageHeight\":").append(record.imageHeight)
+                .append(",\"timestamp\":").append(record.timestamp)
+                .append('}');
+        return json.toString();
+    }
+
+    public MessageRecord fromJson(String line) throws IOException {
+        FlatJsonReader reader = new FlatJsonReader(line);
+        long sessionId = 0;
+        long messageId = 0;
+        String sender = null;
+        String message = null;
+        String imageHash = null;
+        int imageWidth = 0;
+        int imageHeight = 0;
+        long timestamp = 0;
+
+        reader.expect('{');
+        if (!reader.consumeIf('}')) {
+            do {
+                String key = reader.readString();
+                reader.expect(':');
+                switch (key) {
+                    case "sessionId": sessionId = reader.readLong(); break;
+                    case "messageId": messageId = reader.readLong(); break;
+                    case "sender": sender = reader.readNullableString(); break;
+                    case "message": message = reader.readNullableString(); break;
+                    case "imageHash": imageHash = reader.readNullableString(); break;
+                    case "imageWidth": imageWidth = (int) reader.readLong(); break;
+                    case "imageHeight": imageHeight = (int) reader.readLong(); break;
+                    case "timestamp": timestamp = reader.readLong(); break;
+                    default: reader.skipValue(); break;
+                }
+            } while (reader.consumeIf(','));
+            reader.expect('}');
+        }
+        return new MessageRecord(sessionId, messageId, sender, message, imageHash, imageWidth, imageHeight, timestamp);
+    }
+
+    // --- Export lines ---
+
+    public String headerToJson(String exportId, int version, long createdAt) {
+        StringBuilder json = new StringBuilder(96);
+        json.append("{\"type\":");
+        appendString(json, TYPE_HEADER);
+        json.append(",\"exportId\":");
+        appendString(json, exportId);
+        json.append(",\"version\":").append(version)
+                .append(",\"createdAt\":").append(createdAt)
+                .append('}');
+        return json.toString();
+    }
+
+    public String sessionToJson(SessionRecord record) {
+        StringBuilder json = new StringBuilder(64 + (record.title != null ? record.title.length() : 0));
+        json.append("{\"type\":");
+        appendString(json, TYPE_SESSION);
+        json.append(",\"sessionId\":").append(record.sessionId)
+                .append(",\"title\":");
+        appendString(json, record.title);
+        json.append(",\"timestamp\":").append(record.timestamp)
+                .append('}');
+        return json.toString();
+    }
+
+    public SessionRecord sessionFromJson(String line) throws IOException {
+        FlatJsonReader reader = new FlatJsonReader(line);
+        long sessionId = 0;
+        String title = null;
+        long timestamp = 0;
+
+        reader.expect('{');
+        if (!reader.consumeIf('}')) {
+            do {
+                String key = reader.readString();
+                reader.expect(':');
+                switch (key) {
+                    case "sessionId": sessionId = reader.readLong(); break;
+                    case "title": title = reader.readNullableString(); break;
+                    case "timestamp": timestamp = reader.readLong(); break;
+                    default: reader.skipValue(); break;
+                }
+            } while (reader.consumeIf(','));
+            reader.expect('}');
+        }
+        return new SessionRecord(sessionId, title, timestamp);
+    }
+
+    // TYPE_MESSAGE for lines without a type
+    public static String typeOf(String line) throws IOException {
+        String type = readStringField(line, "type");
+        return type != null ? type : TYPE_MESSAGE;
+    }
+
+    // A single top-level string value, or null when the key is missing
+    public static String readStringField(String line, String name) throws IOException {
+        FlatJsonReader reader = new FlatJsonReader(line);
+        reader.expect('{');
+        if (reader.consumeIf('}')) return null;
+        do {
+            String key = reader.readString();
+            reader.expect(':');
+            if (key.equals(name)) return reader.readNullableString();
+            reader.skipValue();
+        } while (reader.consumeIf(','));
+        return null;
+    }
+
+    // --- Writing ---
+
+    static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    // --- Reading ---
+
+    // Just enough JSON for flat objects of strings, numbers, booleans and null; nested values are rejected
+    static class FlatJsonReader {
+        private final String json;
+        private int position;
+
+        FlatJsonReader(String json) {
+            this.json = json;
+        }
+
+        void expect(char c) throws IOException {
+            skipWhitespace();
+            if (position >= json.length() || json.charAt(position) != c) {
+                throw error("Expected '" + c + "'");
+            }
+            position++;
+        }
+
+        boolean consumeIf(char c) {
+            skipWhitespace();
+            if (position < json.length() && json.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        String readNullableString() throws IOException {
+            skipWhitespace();
+            if (json.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            return readString();
+        }
+
+        String readString() throws IOException {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (position < json.length()) {
+                char c = json.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= json.length()) break;
+                char escaped = json.charAt(position++);
+                switch (escaped) {
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'u':
+                        if (position + 4 > json.length()) throw error("Truncated escape");
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            char hex = json.charAt(position++);
+                            int digit = hex < 0x80 ? Character.digit(hex, 16) : -1;
+                            if (digit == -1) throw error("Malformed \\u escape");
+                            code = code * 16 + digit;
+                        }
+                        value.append((char) code);
+                        break;
+                    default: value.append(escaped); break; // \" \\ \/
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        long readLong() throws IOException {
+            skipWhitespace();
+            int start = position;
+            if (position < json.length() && json.charAt(position) == '-') position++;
+            while (position < json.length() && Character.isDigit(json.charAt(position))) position++;
+            try {
+                return Long.parseLong(json.substring(start, position));
+            } catch (NumberFormatException e) {
+                throw error("Expected a number");
+            }
+        }
+
+        void skipValue() throws IOException {
+            skipWhitespace();
+            if (position < json.length() && json.charAt(position) == '"') {
+                readString();
+                return;
+            }
+            if (position < json.length() && "{[".indexOf(json.charAt(position)) != -1) {
+                // Skipping up to the next separator would stop inside it and misread the rest
+                throw error("Nested values are not supported");
+            }
+            // Numbers, booleans and null run until the next separator
+            while (position < json.length() && ",}".indexOf(json.charAt(position)) == -1) {
+                position++;
+            }
+        }
+
+        private void skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " at offset " + position);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.chatbot2.core;
+
+// A chat session as it appears in an export, ahead of its messages
+public final class SessionRecord {
+
+    public final long sessionId;
+    public final String title;
+    public final long timestamp;
+
+    public SessionRecord(long sessionId, String title, long timestamp) {
+        this.sessionId = sessionId;
+        this.title = title;
+        this.timestamp = timestamp;
+    }
+}
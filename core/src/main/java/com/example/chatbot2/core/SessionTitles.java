@@ -0,0 +1,19 @@
+package com.example.chatbot2.core;
+
+// Titles of new sessions, taken from their first message
+public final class SessionTitles {
+
+    public static final int MAX_LENGTH = 30;
+    public static final String IMAGE_ONLY_TITLE = "Image query";
+
+    private SessionTitles() {
+    }
+
+    public static String fromFirstMessage(String message) {
+        String title = (message != null && !message.isEmpty()) ? message : IMAGE_ONLY_TITLE;
+        if (title.length() > MAX_LENGTH) {
+            title = title.substring(0, MAX_LENGTH) + "...";
+        }
+        return title;
+    }
+}
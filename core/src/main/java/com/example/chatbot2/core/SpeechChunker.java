@@ -0,0 +1,178 @@
+package com.example.chatbot2.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Turns Markdown replies into plain sentences for text-to-speech.
+ * Text can be appended as it streams in; each sentence is returned as soon as it is complete, so
+ * speech can start long before the reply ends. Code blocks are skipped, Markdown syntax is removed,
+ * and every line end counts as a sentence end because headings and list items carry no punctuation.
+ */
+public class SpeechChunker {
+
+    // Far below engine limits; long unpunctuated runs are cut at a space so playback still starts early
+    public static final int MAX_SENTENCE_LENGTH = 300;
+
+    private static final Pattern IMAGE = Pattern.compile("!\\[([^\\]]*)]\\([^)]*\\)");
+    private static final Pattern LINK = Pattern.compile("\\[([^\\]]+)]\\([^)]*\\)");
+    private static final Pattern INLINE_CODE = Pattern.compile("`([^`]*)`");
+    private static final Pattern HTML_TAG = Pattern.compile("<[^>]+>");
+    private static final Pattern EMPHASIS = Pattern.compile("\\*+|~~|(?<![\\p{L}\\p{N}])_+|_+(?![\\p{L}\\p{N}])");
+    private static final Pattern HEADING = Pattern.compile("^\\s{0,3}#{1,6}\\s+");
+    private static final Pattern QUOTE = Pattern.compile("^\\s*(>\\s?)+");
+    private static final Pattern LIST_ITEM = Pattern.compile("^\\s*([-*+]|\\d+[.)])\\s+");
+    private static final Pattern RULE = Pattern.compile("^\\s*([-*_]\\s*){3,}$");
+    private static final Pattern TABLE_DIVIDER = Pattern.compile("^\\s*\\|?[\\s:|-]+\\|[\\s:|-]*$");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final String[] ABBREVIATIONS = {"e.g", "i.e", "etc", "vs", "mr", "mrs", "ms", "dr", "st"};
+
+    private final StringBuilder pending = new StringBuilder();
+    private boolean inCodeBlock;
+    private boolean atLineStart = true; // Whether pending begins a line, so line markers still apply
+
+    // A whole reply at once
+    public static List<String> split(String markdown) {
+        SpeechChunker chunker = new SpeechChunker();
+        List<String> sentences = chunker.append(markdown);
+        sentences.addAll(chunker.finish());
+        return sentences;
+    }
+
+    // Returns the sentences completed by this text, ready to speak
+    public List<String> append(String text) {
+        List<String> sentences = new ArrayList<>();
+        if (text == null) return sentences;
+        pending.append(text);
+
+        int newline;
+        while ((newline = pending.indexOf("\n")) != -1) {
+            String line = pending.substring(0, newline);
+            pending.delete(0, newline + 1);
+            addLine(line, sentences);
+            atLineStart = true;
+        }
+        addCompleteSentences(sentences);
+        return sentences;
+    }
+
+    // Whatever is left once the reply has ended
+    public List<String> finish() {
+        List<String> sentences = new ArrayList<>();
+        String rest = pending.toString();
+        pending.setLength(0);
+        addLine(rest, sentences);
+        atLineStart = true;
+        inCodeBlock = false;
+        return sentences;
+    }
+
+    private void addLine(String line, List<String> sentences) {
+        if (atLineStart && line.trim().startsWith("```")) {
+            inCodeBlock = !inCodeBlock;
+            return;
+        }
+        if (inCodeBlock) return;
+        String text = atLineStart ? stripLineMarkers(line) : line;
+        int end;
+        while ((end = sentenceEnd(text)) != -1) {
+            add(text.substring(0, end), sentences);
+            text = text.substring(end);
+        }
+        add(text, sentences);
+    }
+
+    // Emits the finished sentences of an incomplete line, keeping the unfinished tail
+    private void addCompleteSentences(List<String> sentences) {
+        if (inCodeBlock || pending.length() == 0) return;
+        String trimmed = pending.toString().trim();
+        // Fences and table rows are only understood whole
+        if (atLineStart && (trimmed.startsWith("`") || trimmed.startsWith("|"))) return;
+
+        String text = pending.toString();
+        int consumed = 0;
+        int end;
+        while ((end = sentenceEnd(text.substring(consumed))) != -1) {
+            String sentence = text.substring(consumed, consumed + end);
+            add(atLineStart && consumed == 0 ? stripLineMarkers(sentence) : sentence, sentences);
+            consumed += end;
+        }
+        if (consumed > 0) {
+            pending.delete(0, consumed);
+            atLineStart = false;
+        }
+    }
+
+    // Index just past the first sentence end followed by whitespace, or a forced cut; -1 if none yet
+    private static int sentenceEnd(String text) {
+        for (int i = 0; i < text.length() - 1; i++) {
+            char c = text.charAt(i);
+            if ((c == '.' || c == '!' || c == '?') && Character.isWhitespace(text.charAt(i + 1))
+                    && !(c == '.' && isAbbreviationOrNumber(text, i))) {
+                return i + 1;
+            }
+            if (i >= MAX_SENTENCE_LENGTH && Character.isWhitespace(c)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    // "e.g. ", "Dr. " or a list number like "2. " do not end a sentence
+    private static boolean isAbbreviationOrNumber(String text, int dot) {
+        int start = dot;
+        while (start > 0 && !Character.isWhitespace(text.charAt(start - 1))) {
+            start--;
+        }
+        String word = text.substring(start, dot).toLowerCase();
+        if (word.isEmpty()) return false;
+        boolean digits = true;
+        for (int i = 0; i < word.length(); i++) {
+            if (!Character.isDigit(word.charAt(i))) {
+                digits = false;
+                break;
+            }
+        }
+        if (digits) return start == 0;
+        for (String abbreviation : ABBREVIATIONS) {
+            if (word.equals(abbreviation)) return true;
+        }
+        return false;
+    }
+
+    private static String stripLineMarkers(String line) {
+        if (RULE.matcher(line).matches() || TABLE_DIVIDER.matcher(line).matches()) {
+            return "";
+        }
+        String text = HEADING.matcher(line).replaceFirst("");
+        text = QUOTE.matcher(text).replaceFirst("");
+        text = LIST_ITEM.matcher(text).replaceFirst("");
+        if (text.trim().startsWith("|")) {
+            // Table row: speak the cells as a list
+            text = text.trim().replaceAll("^\\||\\|$", "").replaceAll("\\s*\\|\\s*", ", ");
+        }
+        return text;
+    }
+
+    static String stripInline(String text) {
+        text = IMAGE.matcher(text).replaceAll("$1");
+        text = LINK.matcher(text).replaceAll("$1");
+        text = INLINE_CODE.matcher(text).replaceAll("$1");
+        text = HTML_TAG.matcher(text).replaceAll("");
+        text = EMPHASIS.matcher(text).replaceAll("");
+        return WHITESPACE.matcher(text).replaceAll(" ").trim();
+    }
+
+    private static void add(String sentence, List<String> sentences) {
+        String text = stripInline(sentence);
+        // Skip fragments with nothing to pronounce, e.g. a lone bullet or emoji-free punctuation
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isLetterOrDigit(text.charAt(i))) {
+                sentences.add(text);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.chatbot2.core;
+
+// Cheap token estimate used to budget history; close enough to Gemini's count for English text
+public final class TokenEstimator {
+
+    // Gemini bills each image as a fixed number of tokens regardless of its size
+    public static final int IMAGE_TOKENS = 258;
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+}
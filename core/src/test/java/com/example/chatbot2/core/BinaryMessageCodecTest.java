@@ -0,0 +1,79 @@
+package com.example.chatbot2.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+public class BinaryMessageCodecTest {
+
+    private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+    @Test
+    public void roundTrip_keepsEveryField() throws IOException {
+        MessageRecord record = new MessageRecord(3, 42, "BOT", "caf\u00e9 \uD83D\uDE00", "abc123", 640, 480, 1_700_000_000_000L);
+
+        MessageRecord decoded = codec.decode(codec.encode(record));
+
+        assertEquals(3, decoded.sessionId);
+        assertEquals(42, decoded.messageId);
+        assertEquals("BOT", decoded.sender);
+        assertEquals("caf\u00e9 \uD83D\uDE00", decoded.message);
+        assertEquals("abc123", decoded.imageHash);
+        assertEquals(640, decoded.imageWidth);
+        assertEquals(480, decoded.imageHeight);
+        assertEquals(1_700_000_000_000L, decoded.timestamp);
+    }
+
+    @Test
+    public void roundTrip_keepsNullAndEmptyStrings() throws IOException {
+        MessageRecord decoded = codec.decode(codec.encode(new MessageRecord(1, 2, null, "", null, 0, 0, 5)));
+
+        assertNull(decoded.sender);
+        assertEquals("", decoded.message);
+        assertNull(decoded.imageHash);
+    }
+
+    @Test
+    public void roundTrip_keepsMessagesOver64Kb() throws IOException {
+        char[] text = new char[100_000];
+        Arrays.fill(text, 'x');
+        String message = new String(text);
+
+        MessageRecord decoded = codec.decode(codec.encode(new MessageRecord(1, 2, "BOT", message, null, 0, 0, 5)));
+
+        assertEquals(message, decoded.message);
+    }
+
+    @Test
+    public void decode_rejectsUnknownVersion() {
+        byte[] bytes = codec.encode(new MessageRecord(1, 2, "BOT", "m", null, 0, 0, 5));
+        bytes[0] = 2;
+
+        assertThrows(IOException.class, () -> codec.decode(bytes));
+    }
+
+    @Test
+    public void decode_rejectsTruncatedRecord() {
+        byte[] bytes = codec.encode(new MessageRecord(1, 2, "BOT", "message", null, 0, 0, 5));
+
+        assertThrows(IOException.class, () -> codec.decode(Arrays.copyOf(bytes, bytes.length - 3)));
+        assertThrows(IOException.class, () -> codec.decode(new byte[0]));
+    }
+
+    @Test
+    public void decode_rejectsCorruptStringLength() {
+        byte[] bytes = codec.encode(new MessageRecord(1, 2, "BOT", "m", null, 0, 0, 5));
+        // Version byte, then two longs, then the sender's length
+        bytes[17] = (byte) 0xFF;
+        bytes[18] = (byte) 0xFF;
+        bytes[19] = (byte) 0xFF;
+        bytes[20] = (byte) 0xFE;
+
+        assertThrows(IOException.class, () -> codec.decode(bytes));
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.chatbot2.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HistoryPlannerTest {
+
+    private static final int NOTE_TOKENS = TokenEstimator.estimate(HistoryPlanner.OMITTED_IMAGE_NOTE);
+
+    private static class Turn implements HistoryTurn {
+        final boolean fromUser;
+        final String text;
+        final String imageHash;
+        final boolean imageAttached;
+
+        Turn(boolean fromUser, String text, String imageHash, boolean imageAttached) {
+            this.fromUser = fromUser;
+            this.text = text;
+            this.imageHash = imageHash;
+            this.imageAttached = imageAttached;
+        }
+
+        @Override
+        public boolean isFromUser() {
+            return fromUser;
+        }
+
+        @Override
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public int getTextTokens() {
+            return TokenEstimator.estimate(text);
+        }
+
+        @Override
+        public String getImageHash() {
+            return imageHash;
+        }
+
+        @Override
+        public boolean isImageAttached() {
+            return imageAttached;
+        }
+    }
+
+    // 10 estimated tokens
+    private static final String TEXT = "0123456789012345678901234567890123456789";
+
+    private static List<Turn> exchanges(int turnCount) {
+        List<Turn> turns = new ArrayList<>();
+        for (int i = 0; i < turnCount; i++) {
+            turns.add(new Turn(i % 2 == 0, TEXT, null, false));
+        }
+        return turns;
+    }
+
+    // --- Token costs ---
+
+    @Test
+    public void tokens_countImagesByHowTheyAreReplayed() {
+        assertEquals(10, HistoryPlanner.tokens(new Turn(true, TEXT, null, false)));
+        assertEquals(10 + TokenEstimator.IMAGE_TOKENS, HistoryPlanner.tokens(new Turn(true, TEXT, "h", true)));
+        assertEquals(10 + NOTE_TOKENS, HistoryPlanner.tokens(new Turn(true, TEXT, "h", false)));
+    }
+
+    @Test
+    public void estimateTokens_includesSummary() {
+        assertEquals(10 + 60, HistoryPlanner.estimateTokens(TEXT, exchanges(6)));
+        assertEquals(0, HistoryPlanner.estimateTokens(null, Collections.<Turn>emptyList()));
+    }
+
+    // --- Folding ---
+
+    @Test
+    public void turnsToFold_isZeroAtExactlyTheBudget() {
+        assertEquals(0, HistoryPlanner.turnsToFold(null, exchanges(6), 60, 2));
+    }
+
+    @Test
+    public void turnsToFold_foldsWholeExchangesDownToHalfTheBudget() {
+        // 60 tokens over a budget of 59: fold pairs until at most 29 remain
+        assertEquals(4, HistoryPlanner.turnsToFold(null, exchanges(6), 59, 2));
+    }
+
+    @Test
+    public void turnsToFold_countsTheSummaryAgainstTheBudget() {
+        assertEquals(0, HistoryPlanner.turnsToFold(null, exchanges(6), 65, 2));
+        assertEquals(4, HistoryPlanner.turnsToFold(TEXT, exchanges(6), 65, 2));
+    }
+
+    @Test
+    public void turnsToFold_keepsTheMinimumNumberOfTurns() {
+        assertEquals(2, HistoryPlanner.turnsToFold(null, exchanges(6), 10, 4));
+        assertEquals(0, HistoryPlanner.turnsToFold(null, exchanges(2), 10, 2));
+    }
+
+    @Test
+    public void turnsToFold_doesNotSplitAnExchange() {
+        int folded = HistoryPlanner.turnsToFold(null, exchanges(8), 50, 1);
+
+        assertEquals(0, folded % 2);
+        assertTrue(folded > 0);
+    }
+
+    // --- Images and replay text ---
+
+    @Test
+    public void oldestReplayedImage_keepsTheNewestImages() {
+        List<Turn> turns = Arrays.asList(
+                new Turn(true, "a", "h0", true),
+                new Turn(false, "b", null, false),
+                new Turn(true, "c", "h2", true),
+                new Turn(false, "d", null, false),
+                new Turn(true, "e", "h4", true));
+
+        assertEquals(2, HistoryPlanner.oldestReplayedImage(turns, 2));
+        assertEquals(4, HistoryPlanner.oldestReplayedImage(turns, 1));
+        assertEquals(0, HistoryPlanner.oldestReplayedImage(turns, 5));
+        assertEquals(0, HistoryPlanner.oldestReplayedImage(exchanges(4), 1));
+    }
+
+    @Test
+    public void replayText_mentionsImagesThatAreNoLongerSent() {
+        assertEquals("look\n" + HistoryPlanner.OMITTED_IMAGE_NOTE,
+                HistoryPlanner.replayText(new Turn(true, "look", "h", false)));
+        assertEquals(HistoryPlanner.OMITTED_IMAGE_NOTE, HistoryPlanner.replayText(new Turn(true, null, "h", false)));
+        assertEquals("look", HistoryPlanner.replayText(new Turn(true, "look", "h", true)));
+    }
+
+    @Test
+    public void fingerprint_coversOnlyTheLastExchange() {
+        List<Turn> turns = new ArrayList<>(exchanges(2));
+        String before = HistoryPlanner.fingerprint(turns);
+        turns.add(0, new Turn(true, "older", null, false));
+
+        assertEquals(before, HistoryPlanner.fingerprint(turns));
+        assertFalse(before.equals(HistoryPlanner.fingerprint(exchanges(1))));
+    }
+}
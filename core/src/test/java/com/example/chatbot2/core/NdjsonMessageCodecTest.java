@@ -0,0 +1,131 @@
+package com.example.chatbot2.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+public class NdjsonMessageCodecTest {
+
+    private final NdjsonMessageCodec codec = new NdjsonMessageCodec();
+
+    @Test
+    public void roundTrip_keepsEveryField() throws IOException {
+        MessageRecord record = new MessageRecord(3, 42, "BOT", "Hello there", "abc123", 640, 480, 1_700_000_000_000L);
+
+        MessageRecord decoded = codec.decode(codec.encode(record));
+
+        assertRecordEquals(record, decoded);
+    }
+
+    @Test
+    public void roundTrip_keepsNullStrings() throws IOException {
+        MessageRecord record = new MessageRecord(1, 2, null, null, null, 0, 0, 5);
+
+        MessageRecord decoded = codec.fromJson(codec.toJson(record));
+
+        assertRecordEquals(record, decoded);
+    }
+
+    @Test
+    public void roundTrip_escapesQuotesBackslashesAndControlCharacters() throws IOException {
+        String message = "She said \"hi\" \\ then\nleft\tearly\r\u0001 caf\u00e9 \uD83D\uDE00";
+        MessageRecord record = new MessageRecord(1, 2, "USER", message, null, 0, 0, 5);
+
+        String json = codec.toJson(record);
+
+        assertEquals(-1, json.indexOf('\n'));
+        assertEquals(message, codec.fromJson(json).message);
+    }
+
+    @Test
+    public void decode_readsUnicodeAndShortEscapes() throws IOException {
+        MessageRecord decoded = codec.fromJson("{\"message\":\"caf\\u00E9 \\/ \\b\\f\"}");
+
+        assertEquals("caf\u00e9 / \b\f", decoded.message);
+    }
+
+    @Test
+    public void decode_skipsUnknownScalarKeys() throws IOException {
+        MessageRecord decoded = codec.fromJson(
+                "{ \"extra\" : \"x,}\", \"flag\": true, \"none\": null, \"ratio\": 1.5, \"messageId\": 7 }");
+
+        assertEquals(7, decoded.messageId);
+    }
+
+    @Test
+    public void decode_emptyObjectGivesDefaults() throws IOException {
+        MessageRecord decoded = codec.fromJson("{}");
+
+        assertEquals(0, decoded.sessionId);
+        assertNull(decoded.message);
+    }
+
+    @Test
+    public void decode_rejectsNestedObject() {
+        assertThrows(IOException.class, () -> codec.fromJson("{\"meta\":{\"a\":1},\"messageId\":7}"));
+    }
+
+    @Test
+    public void decode_rejectsNestedArray() {
+        assertThrows(IOException.class, () -> codec.fromJson("{\"tags\":[1,2],\"messageId\":7}"));
+    }
+
+    @Test
+    public void decode_rejectsMalformedUnicodeEscape() {
+        assertThrows(IOException.class, () -> codec.fromJson("{\"message\":\"\\u12G4\"}"));
+        assertThrows(IOException.class, () -> codec.fromJson("{\"message\":\"\\u+123\"}"));
+    }
+
+    @Test
+    public void decode_rejectsTruncatedInput() {
+        assertThrows(IOException.class, () -> codec.fromJson("{\"message\":\"\\u12"));
+        assertThrows(IOException.class, () -> codec.fromJson("{\"message\":\"open"));
+        assertThrows(IOException.class, () -> codec.fromJson("{\"messageId\":7"));
+        assertThrows(IOException.class, () -> codec.fromJson(""));
+    }
+
+    @Test
+    public void decode_rejectsWrongValueTypes() {
+        assertThrows(IOException.class, () -> codec.fromJson("{\"messageId\":\"7\"}"));
+        assertThrows(IOException.class, () -> codec.fromJson("{\"message\":7}"));
+    }
+
+    @Test
+    public void session_roundTrip() throws IOException {
+        SessionRecord session = new SessionRecord(9, "Trip \"plans\"", 123);
+
+        SessionRecord decoded = codec.sessionFromJson(codec.sessionToJson(session));
+
+        assertEquals(9, decoded.sessionId);
+        assertEquals("Trip \"plans\"", decoded.title);
+        assertEquals(123, decoded.timestamp);
+    }
+
+    @Test
+    public void typeOf_tellsExportLinesApart() throws IOException {
+        String header = codec.headerToJson("export-1", 1, 10);
+        String session = codec.sessionToJson(new SessionRecord(1, "t", 2));
+        String message = codec.toJson(new MessageRecord(1, 2, "USER", "m", null, 0, 0, 3));
+
+        assertEquals(NdjsonMessageCodec.TYPE_HEADER, NdjsonMessageCodec.typeOf(header));
+        assertEquals(NdjsonMessageCodec.TYPE_SESSION, NdjsonMessageCodec.typeOf(session));
+        assertEquals(NdjsonMessageCodec.TYPE_MESSAGE, NdjsonMessageCodec.typeOf(message));
+        assertEquals("export-1", NdjsonMessageCodec.readStringField(header, "exportId"));
+        assertNull(NdjsonMessageCodec.readStringField(header, "missing"));
+    }
+
+    private static void assertRecordEquals(MessageRecord expected, MessageRecord actual) {
+        assertEquals(expected.sessionId, actual.sessionId);
+        assertEquals(expected.messageId, actual.messageId);
+        assertEquals(expected.sender, actual.sender);
+        assertEquals(expected.message, actual.message);
+        assertEquals(expected.imageHash, actual.imageHash);
+        assertEquals(expected.imageWidth, actual.imageWidth);
+        assertEquals(expected.imageHeight, actual.imageHeight);
+        assertEquals(expected.timestamp, actual.timestamp);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.chatbot2.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TokenEstimatorTest {
+
+    @Test
+    public void estimate_isZeroForNoText() {
+        assertEquals(0, TokenEstimator.estimate(null));
+        assertEquals(0, TokenEstimator.estimate(""));
+    }
+
+    @Test
+    public void estimate_roundsPartialTokensUp() {
+        assertEquals(1, TokenEstimator.estimate("a"));
+        assertEquals(1, TokenEstimator.estimate("abcd"));
+        assertEquals(2, TokenEstimator.estimate("abcde"));
+        assertEquals(250, TokenEstimator.estimate(new String(new char[1000])));
+    }
+}